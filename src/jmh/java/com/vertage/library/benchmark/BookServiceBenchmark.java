@@ -0,0 +1,98 @@
+package com.vertage.library.benchmark;
+
+import com.vertage.library.LibraryApplication;
+import com.vertage.library.dto.BookView;
+import com.vertage.library.dto.DataFormat;
+import com.vertage.library.service.BookService;
+import com.vertage.library.service.CatalogImportService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service hot paths through the full Spring context (transactions, cache, events) against in-memory H2.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookServiceBenchmark {
+
+    @Param({"10000"})
+    private int books;
+
+    @Param({"100"})
+    private int users;
+
+    @Param({"true", "false"})
+    private boolean cacheEnabled;
+
+    private ConfigurableApplicationContext context;
+
+    private BookService bookService;
+
+    @Setup(Level.Trial)
+    public void startContext() {
+        context = new SpringApplicationBuilder(LibraryApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.driver-class-name=org.h2.Driver",
+                        "--spring.datasource.url=jdbc:h2:mem:benchmark;MODE=MySQL;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--library.jdbc.stream-fetch-size=1000",
+                        "--library.cache.enabled=" + cacheEnabled,
+                        "--logging.level.root=WARN");
+        CatalogImportService importService = context.getBean(CatalogImportService.class);
+        importService.importUsers(csv("user", users), DataFormat.CSV);
+        importService.importBooks(csv("book", books), DataFormat.CSV);
+        bookService = context.getBean(BookService.class);
+        if (cacheEnabled) {
+            for (long id = 1; id <= books; id++) {
+                bookService.getViewById(id);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void closeContext() {
+        context.close();
+    }
+
+    @Benchmark
+    public BookView getViewById() {
+        return bookService.getViewById(randomId(books));
+    }
+
+    @Benchmark
+    public void takeAndReturnBook() {
+        long bookId = randomId(books);
+        bookService.takeBook(bookId, randomId(users));
+        bookService.returnBook(bookId);
+    }
+
+    @Benchmark
+    public List<BookView> getAllPage() {
+        return bookService.getAll(randomId(books - 50), 50);
+    }
+
+    private static long randomId(int count) {
+        return 1 + ThreadLocalRandom.current().nextInt(count);
+    }
+
+    private static ByteArrayInputStream csv(String prefix, int count) {
+        StringBuilder csv = new StringBuilder("name\n");
+        for (int i = 1; i <= count; i++) {
+            csv.append(prefix).append(' ').append(i).append('\n');
+        }
+        return new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,59 @@
+package com.vertage.library.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vertage.library.entity.Book;
+import com.vertage.library.entity.User;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson round trips of the entity graph as the controllers return it: a user with its books
+ * ({@code @JsonManagedReference}) and books on their own, whose {@code @JsonBackReference} user is skipped.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+    @Param({"1", "20", "200"})
+    private int booksPerUser;
+
+    private ObjectMapper objectMapper;
+
+    private User user;
+
+    private byte[] userJson;
+
+    @Setup
+    public void buildGraph() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        user = new User(1L, "user", new ArrayList<>());
+        for (long id = 1; id <= booksPerUser; id++) {
+            user.getBooks().add(new Book(id, "book " + id, user));
+        }
+        userJson = objectMapper.writeValueAsBytes(user);
+    }
+
+    @Benchmark
+    public byte[] serializeUserWithBooks() throws IOException {
+        return objectMapper.writeValueAsBytes(user);
+    }
+
+    @Benchmark
+    public byte[] serializeBooks() throws IOException {
+        return objectMapper.writeValueAsBytes(user.getBooks());
+    }
+
+    @Benchmark
+    public User deserializeUserWithBooks() throws IOException {
+        return objectMapper.readValue(userJson, User.class);
+    }
+
+}
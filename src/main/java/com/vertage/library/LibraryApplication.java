@@ -2,14 +2,38 @@ package com.vertage.library;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.util.Arrays;
 
 @SpringBootApplication
-@EnableWebMvc
 public class LibraryApplication {
 
+    /**
+     * Startup steps kept for the startup timing report and {@code /actuator/startup}; later steps are dropped.
+     */
+    private static final int STARTUP_STEPS = 4096;
+
     public static void main(String[] args) {
-        SpringApplication.run(LibraryApplication.class, args);
+        SpringApplication application = new SpringApplication(LibraryApplication.class);
+        if (recordsStartup(args)) {
+            application.setApplicationStartup(new BufferingApplicationStartup(STARTUP_STEPS));
+        }
+        application.run(args);
+    }
+
+    /**
+     * Whether the startup report is on, through {@code library.startup.report} or the {@code faststart} profile.
+     * The application's environment does not exist yet, so only the arguments, system properties and
+     * environment variables are looked at, not the properties files.
+     */
+    static boolean recordsStartup(String[] args) {
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new SimpleCommandLinePropertySource(args));
+        return environment.getProperty("library.startup.report", Boolean.class, false)
+                || Arrays.asList(environment.getActiveProfiles()).contains("faststart");
     }
 
 }
@@ -0,0 +1,197 @@
+package com.vertage.library.admission;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vertage.library.dto.LoanRequest;
+import com.vertage.library.util.BufferedBodyRequest;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * Admission control in front of the controllers, so that when the database slows down requests are turned
+ * away at once instead of tying up a Tomcat thread while they wait for a connection:
+ * <ul>
+ *     <li>reads (GET and HEAD) and writes each run under their own {@link AimdLimiter}, so a burst of reads
+ *     cannot starve takes and returns;</li>
+ *     <li>{@code PATCH /books/{id}/take} is limited per {@code userId} by {@link TokenBuckets} and answered
+ *     with 429 when the user's bucket is empty. The batch {@code PATCH /books/take} charges each user one
+ *     token per item and is answered with 429 when any of their buckets is empty;</li>
+ *     <li>while the connection pool has too many threads waiting, new requests get 503.</li>
+ * </ul>
+ * Every rejection but 413 carries {@code Retry-After} and is counted in {@value #REJECTED}, tagged with the budget
+ * and the reason. The long-lived {@code /books/events} stream is not limited, nor are the warm-up's own requests,
+ * marked with {@value #WARM_UP}, while it runs.
+ */
+@RequiredArgsConstructor
+public class AdmissionFilter extends OncePerRequestFilter {
+
+    public static final String REJECTED = "library.admission.rejected";
+
+    /**
+     * Header the warm-up sets on its requests to the instance's own port.
+     */
+    public static final String WARM_UP = "X-Warm-Up";
+
+    private static final Pattern TAKE = Pattern.compile("/books/[^/]+/take");
+    private static final String TAKE_BATCH = "/books/take";
+    private static final String EVENTS = "/books/events";
+    private static final String RETRY_SECONDS = "1";
+
+    @NonNull
+    private final AimdLimiter reads;
+
+    @NonNull
+    private final AimdLimiter writes;
+
+    @NonNull
+    private final TokenBuckets<String> takesPerUser;
+
+    @NonNull
+    private final BooleanSupplier poolSaturated;
+
+    /**
+     * Whether the warm-up is running. Its requests are slow while the JIT compiles and must not lower the limits;
+     * the header alone is not trusted, so it is ignored once the warm-up is over.
+     */
+    @NonNull
+    private final BooleanSupplier warmingUp;
+
+    @NonNull
+    private final MeterRegistry meterRegistry;
+
+    @NonNull
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Batch takes are buffered to count their items per user; larger bodies are answered with 413.
+     */
+    private final long maxTakeBatchSize;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return EVENTS.equals(path(request)) || request.getHeader(WARM_UP) != null && warmingUp.getAsBoolean();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean read = "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+        String budget = read ? "read" : "write";
+        boolean take = !read && "PATCH".equals(request.getMethod()) && TAKE.matcher(path(request)).matches();
+        byte[] batch = null;
+        if ("PATCH".equals(request.getMethod()) && TAKE_BATCH.equals(path(request))) {
+            batch = BufferedBodyRequest.readBody(request, maxTakeBatchSize);
+            if (batch == null) {
+                reject(response, budget, "size", HttpStatus.PAYLOAD_TOO_LARGE, null,
+                        "Batch takes are limited to " + maxTakeBatchSize + " bytes");
+                return;
+            }
+            request = new BufferedBodyRequest(request, batch);
+        }
+        if (poolSaturated.getAsBoolean()) {
+            reject(response, budget, "pool", HttpStatus.SERVICE_UNAVAILABLE, RETRY_SECONDS,
+                    "The database is saturated, please retry later");
+            return;
+        }
+        AimdLimiter limiter = read ? reads : writes;
+        if (!limiter.tryAcquire()) {
+            reject(response, budget, "limit", HttpStatus.SERVICE_UNAVAILABLE, RETRY_SECONDS,
+                    "Too many concurrent requests, please retry later");
+            return;
+        }
+        // Takes are charged only once admitted, so a shed request costs the user nothing.
+        if (take || batch != null) {
+            Duration wait = take ? chargeTake(request.getParameter("userId")) : chargeTakes(batch);
+            if (!wait.isZero()) {
+                limiter.cancel();
+                reject(response, budget, "rate", HttpStatus.TOO_MANY_REQUESTS, retryAfter(wait), take
+                        ? "Too many takes for this user, please retry later"
+                        : "Too many takes for a user in this batch, please retry later");
+                return;
+            }
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            chain.doFilter(request, response);
+            failed = response.getStatus() >= HttpStatus.INTERNAL_SERVER_ERROR.value();
+        } finally {
+            limiter.release(System.nanoTime() - start, failed);
+        }
+    }
+
+    private Duration chargeTake(String userId) {
+        return userId == null ? Duration.ZERO : takesPerUser.tryConsume(userId);
+    }
+
+    /**
+     * Charges every user in the batch one token per item, or none of them: when a user is short, the tokens
+     * already taken from the others are given back. A body that does not parse is left to the controller to
+     * reject.
+     *
+     * @return zero if every user had a token, otherwise how long until the first one without has one
+     */
+    private Duration chargeTakes(byte[] body) throws IOException {
+        LoanRequest[] requests;
+        try {
+            requests = objectMapper.readValue(body, LoanRequest[].class);
+        } catch (JsonProcessingException e) {
+            return Duration.ZERO;
+        }
+        Map<Long, Integer> takesPerUserId = new HashMap<>();
+        for (LoanRequest loan : requests) {
+            if (loan != null && loan.getUserId() != null) {
+                takesPerUserId.merge(loan.getUserId(), 1, Integer::sum);
+            }
+        }
+        List<Map.Entry<Long, Integer>> charged = new ArrayList<>(takesPerUserId.size());
+        for (Map.Entry<Long, Integer> takes : takesPerUserId.entrySet()) {
+            Duration wait = takesPerUser.tryConsume(takes.getKey().toString(), takes.getValue());
+            if (!wait.isZero()) {
+                for (Map.Entry<Long, Integer> refund : charged) {
+                    takesPerUser.refund(refund.getKey().toString(), refund.getValue());
+                }
+                return wait;
+            }
+            charged.add(takes);
+        }
+        return Duration.ZERO;
+    }
+
+    private static String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    private static String retryAfter(Duration wait) {
+        long seconds = wait.getSeconds() + (wait.getNano() > 0 ? 1 : 0);
+        return Long.toString(Math.max(1, seconds));
+    }
+
+    private void reject(HttpServletResponse response, String budget, String reason, HttpStatus status,
+                        String retryAfter, String message) throws IOException {
+        meterRegistry.counter(REJECTED, "budget", budget, "reason", reason).increment();
+        response.setStatus(status.value());
+        if (retryAfter != null) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, retryAfter);
+        }
+        response.setContentType("text/plain");
+        response.getWriter().write(message);
+    }
+}
@@ -0,0 +1,93 @@
+package com.vertage.library.admission;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A concurrency limit that adapts to latency: additive increase, multiplicative decrease. A request that
+ * finishes within the latency threshold while at least half the limit was in use raises the limit by one;
+ * a slower or failed request lowers it by the backoff ratio. The limit stays between min and max.
+ * <p>
+ * The current limit is published as the {@code library.admission.limit} gauge and requests in flight as
+ * {@code library.admission.in-flight}, both tagged with the budget name.
+ */
+public class AimdLimiter {
+
+    public static final String LIMIT = "library.admission.limit";
+    public static final String IN_FLIGHT = "library.admission.in-flight";
+
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final long latencyThresholdNanos;
+
+    private final AtomicInteger inFlight;
+
+    private volatile double limit;
+
+    public AimdLimiter(String name, int initialLimit, int minLimit, int maxLimit, Duration latencyThreshold,
+                       MeterRegistry meterRegistry) {
+        if (minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Limits of " + name + " must satisfy 1 <= min <= initial <= max");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.limit = initialLimit;
+        Tags tags = Tags.of("budget", name);
+        this.inFlight = meterRegistry.gauge(IN_FLIGHT, tags, new AtomicInteger());
+        meterRegistry.gauge(LIMIT, tags, this, AimdLimiter::getLimit);
+    }
+
+    /**
+     * @return {@code true} if the request may run; it must then call {@link #release(long, boolean)}, or
+     * {@link #cancel()} if it is rejected before it runs
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= getLimit()) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @param latencyNanos how long the request ran
+     * @param failed       whether it failed in a way that suggests overload, e.g. a 5xx
+     */
+    public void release(long latencyNanos, boolean failed) {
+        int current = inFlight.getAndDecrement();
+        synchronized (this) {
+            if (failed || latencyNanos > latencyThresholdNanos) {
+                limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+            } else if (current * 2 >= limit) {
+                limit = Math.min(maxLimit, limit + 1);
+            }
+        }
+    }
+
+    /**
+     * Releases a slot whose request did not run, without adjusting the limit.
+     */
+    public void cancel() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,115 @@
+package com.vertage.library.admission;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import java.time.Duration;
+
+/**
+ * One token bucket per key, e.g. per user: each holds up to the burst and refills at the rate per second.
+ * Buckets idle long enough to be full again are dropped, so the number kept is bounded by the active keys
+ * and the maximum size.
+ */
+public class TokenBuckets<K> {
+
+    private final double ratePerNano;
+
+    private final double burst;
+
+    private final Cache<K, Bucket> buckets;
+
+    public TokenBuckets(double ratePerSecond, int burst, long maximumSize) {
+        if (ratePerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate must be positive and burst at least 1");
+        }
+        this.ratePerNano = ratePerSecond / Duration.ofSeconds(1).toNanos();
+        this.burst = burst;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<K, Bucket>() {
+                    @Override
+                    public long expireAfterCreate(K key, Bucket bucket, long currentTime) {
+                        return bucket.nanosUntilFull();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(K key, Bucket bucket, long currentTime, long currentDuration) {
+                        return bucket.nanosUntilFull();
+                    }
+
+                    @Override
+                    public long expireAfterRead(K key, Bucket bucket, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Takes a token from the key's bucket.
+     *
+     * @return zero if a token was taken, otherwise how long until one is available
+     */
+    public Duration tryConsume(K key) {
+        return tryConsume(key, 1);
+    }
+
+    /**
+     * Takes {@code tokens} from the key's bucket as soon as it holds one, so a batch larger than the burst
+     * is not refused forever; it overdraws the bucket and the key waits until the debt is refilled.
+     *
+     * @return zero if the tokens were taken, otherwise how long until one is available
+     */
+    public Duration tryConsume(K key, int tokens) {
+        long now = System.nanoTime();
+        Duration[] wait = new Duration[1];
+        // Consuming inside compute updates the entry, so its expiry follows the tokens left.
+        buckets.asMap().compute(key, (k, bucket) -> {
+            Bucket current = bucket != null ? bucket : new Bucket(burst, now);
+            wait[0] = current.tryConsume(now, tokens);
+            return current;
+        });
+        return wait[0];
+    }
+
+    /**
+     * Gives back tokens taken for a request that was then rejected, up to the burst.
+     */
+    public void refund(K key, int tokens) {
+        buckets.asMap().computeIfPresent(key, (k, bucket) -> {
+            bucket.refund(tokens);
+            return bucket;
+        });
+    }
+
+    private final class Bucket {
+
+        private double tokens;
+
+        private long refilledAt;
+
+        Bucket(double tokens, long refilledAt) {
+            this.tokens = tokens;
+            this.refilledAt = refilledAt;
+        }
+
+        Duration tryConsume(long now, int count) {
+            tokens = Math.min(burst, tokens + (now - refilledAt) * ratePerNano);
+            refilledAt = now;
+            if (tokens >= 1) {
+                tokens -= count;
+                return Duration.ZERO;
+            }
+            return Duration.ofNanos((long) Math.ceil((1 - tokens) / ratePerNano));
+        }
+
+        void refund(int count) {
+            tokens = Math.min(burst, tokens + count);
+        }
+
+        long nanosUntilFull() {
+            return Math.max(1, (long) Math.ceil((burst - tokens) / ratePerNano));
+        }
+    }
+}
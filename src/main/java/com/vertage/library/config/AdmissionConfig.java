@@ -0,0 +1,75 @@
+package com.vertage.library.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vertage.library.admission.AdmissionFilter;
+import com.vertage.library.admission.AimdLimiter;
+import com.vertage.library.admission.TokenBuckets;
+import com.vertage.library.runner.WarmUpRunner;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Admission control for the book and user endpoints, see {@link AdmissionFilter}. It runs before the
+ * idempotency filter, so a rejected request does not reserve its key.
+ */
+@Configuration
+@ConditionalOnWebApplication
+@ConditionalOnProperty(prefix = "library.admission", name = "enabled", havingValue = "true", matchIfMissing = true)
+@EnableConfigurationProperties(AdmissionProperties.class)
+public class AdmissionConfig {
+
+    @Bean
+    public FilterRegistrationBean<AdmissionFilter> admissionFilter(AdmissionProperties properties,
+                                                                   ObjectProvider<HikariDataSource> pools,
+                                                                   ObjectProvider<WarmUpRunner> warmUp,
+                                                                   MeterRegistry meterRegistry,
+                                                                   ObjectMapper objectMapper) {
+        WarmUpRunner warmUpRunner = warmUp.getIfAvailable();
+        AdmissionFilter filter = new AdmissionFilter(
+                limiter("read", properties.getRead(), meterRegistry),
+                limiter("write", properties.getWrite(), meterRegistry),
+                new TokenBuckets<>(properties.getTakeRate(), properties.getTakeBurst(), properties.getMaximumUsers()),
+                poolSaturated(pools.orderedStream().collect(Collectors.toList()), properties.getMaxPoolWaiters()),
+                () -> warmUpRunner != null && warmUpRunner.isRunning(),
+                meterRegistry,
+                objectMapper,
+                properties.getMaxTakeBatchSize().toBytes());
+        FilterRegistrationBean<AdmissionFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns("/books/*", "/users/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 15);
+        return registration;
+    }
+
+    private static AimdLimiter limiter(String name, AdmissionProperties.Budget budget, MeterRegistry meterRegistry) {
+        return new AimdLimiter(name, budget.getInitialLimit(), budget.getMinLimit(), budget.getMaxLimit(),
+                budget.getLatencyThreshold(), meterRegistry);
+    }
+
+    /**
+     * A pool that has not started yet has no MXBean and counts as not saturated.
+     */
+    static BooleanSupplier poolSaturated(List<HikariDataSource> pools, int maxWaiters) {
+        return () -> {
+            for (HikariDataSource pool : pools) {
+                HikariPoolMXBean bean = pool.getHikariPoolMXBean();
+                if (bean != null && bean.getThreadsAwaitingConnection() >= maxWaiters) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+}
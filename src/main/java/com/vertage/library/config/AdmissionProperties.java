@@ -0,0 +1,69 @@
+package com.vertage.library.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Admission control, e.g. {@code library.admission.write.max-limit=100}. Reads and writes have separate
+ * concurrency budgets; takes are also rate limited per user.
+ */
+@Data
+@ConfigurationProperties("library.admission")
+public class AdmissionProperties {
+
+    private boolean enabled = true;
+
+    private Budget read = new Budget(50, 10, 400, Duration.ofMillis(250));
+
+    private Budget write = new Budget(20, 5, 200, Duration.ofMillis(500));
+
+    /**
+     * Takes per second each user may make once the burst is used up.
+     */
+    private double takeRate = 2;
+
+    private int takeBurst = 10;
+
+    /**
+     * Batch takes are read up front to charge every user one token per item, so their body is capped;
+     * the default fits the largest batch.
+     */
+    private DataSize maxTakeBatchSize = DataSize.ofKilobytes(256);
+
+    private long maximumUsers = 100_000;
+
+    /**
+     * New requests are rejected while at least this many threads wait for a connection of a pool bean,
+     * i.e. the primary. Replica pools are not checked.
+     */
+    private int maxPoolWaiters = 10;
+
+    @Data
+    public static class Budget {
+
+        private int initialLimit;
+
+        private int minLimit;
+
+        private int maxLimit;
+
+        /**
+         * Requests slower than this lower the limit.
+         */
+        private Duration latencyThreshold;
+
+        public Budget() {
+        }
+
+        Budget(int initialLimit, int minLimit, int maxLimit, Duration latencyThreshold) {
+            this.initialLimit = initialLimit;
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+            this.latencyThreshold = latencyThreshold;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.vertage.library.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Local entity cache for {@code getById}. Size, TTL and statistics come from {@code spring.cache.caffeine.spec};
+ * hit, miss and eviction counts are published as {@code cache.*} metrics.
+ * <p>
+ * The caching advice is ordered outside the transactional one, so evictions happen after commit
+ * and cache hits do not open a transaction at all.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "library.cache", name = "enabled", havingValue = "true", matchIfMissing = true)
+@EnableCaching(order = Ordered.LOWEST_PRECEDENCE - 1)
+public class CacheConfig {
+
+    public static final String BOOKS = "books";
+    public static final String USERS = "users";
+}
@@ -0,0 +1,64 @@
+package com.vertage.library.config;
+
+import com.vertage.library.controller.BookController;
+import com.vertage.library.controller.UserController;
+import com.vertage.library.service.BookAvailabilityService;
+import com.vertage.library.service.BookService;
+import com.vertage.library.service.UserService;
+import com.vertage.library.startup.ChangelogFingerprint;
+import com.vertage.library.startup.StartupTimingReport;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.support.ResourcePatternResolver;
+
+/**
+ * Pieces of the {@code faststart} profile, see {@code application-faststart.properties}. Each can also be
+ * switched on by its own property.
+ */
+@Configuration
+public class FastStartConfig {
+
+    /**
+     * With {@code spring.main.lazy-initialization} the beans on the take and read paths are still created at
+     * startup, so the first requests do not pay for them.
+     */
+    @Bean
+    public static LazyInitializationExcludeFilter hotBeans() {
+        return LazyInitializationExcludeFilter.forBeanTypes(BookController.class, UserController.class,
+                BookService.class, UserService.class, BookAvailabilityService.class, CacheManager.class);
+    }
+
+    /**
+     * Static, as a bean post-processor must not wait for this configuration to be created.
+     */
+    @Bean
+    @ConditionalOnProperty("library.liquibase.skip-unchanged")
+    public static ChangelogFingerprint changelogFingerprint(
+            ResourcePatternResolver resourcePatternResolver,
+            @Value("${spring.liquibase.enabled:true}") boolean liquibaseEnabled) {
+        return new ChangelogFingerprint(resourcePatternResolver, liquibaseEnabled);
+    }
+
+    @Bean
+    @ConditionalOnProperty("library.startup.report")
+    public StartupTimingReport startupTimingReport(@Value("${library.startup.slowest-beans:10}") int slowestBeans) {
+        return new StartupTimingReport(slowestBeans);
+    }
+
+    /**
+     * For a class-data sharing training run: the JVM exits as soon as the application is ready, after the
+     * timing report, and writes the archive on the way out.
+     */
+    @Bean
+    @ConditionalOnProperty("library.startup.exit-when-ready")
+    public ApplicationListener<ApplicationReadyEvent> exitWhenReady() {
+        return event -> System.exit(SpringApplication.exit(event.getApplicationContext()));
+    }
+}
@@ -0,0 +1,60 @@
+package com.vertage.library.config;
+
+import com.vertage.library.idempotency.IdempotencyFilter;
+import com.vertage.library.idempotency.IdempotencyStore;
+import com.vertage.library.idempotency.InMemoryIdempotencyStore;
+import com.vertage.library.idempotency.JdbcIdempotencyStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * {@code Idempotency-Key} support for the book and user endpoints. Keys live in memory unless
+ * {@code library.idempotency.store=jdbc}, which shares them between instances through {@code tb_idempotency_key}.
+ * The filter runs inside the query count filter, so a replay records no statements.
+ */
+@Configuration
+@ConditionalOnWebApplication
+@ConditionalOnProperty(prefix = "library.idempotency", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class IdempotencyConfig {
+
+    @Value("${library.idempotency.ttl:24h}")
+    private Duration ttl;
+
+    @Value("${library.idempotency.lock-timeout:1m}")
+    private Duration lockTimeout;
+
+    @Bean
+    @ConditionalOnProperty(prefix = "library.idempotency", name = "store", havingValue = "jdbc")
+    public IdempotencyStore jdbcIdempotencyStore(NamedParameterJdbcTemplate jdbcTemplate) {
+        return new JdbcIdempotencyStore(jdbcTemplate, ttl, lockTimeout);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(IdempotencyStore.class)
+    public IdempotencyStore inMemoryIdempotencyStore(@Value("${library.idempotency.maximum-size:100000}") long maximumSize) {
+        return new InMemoryIdempotencyStore(maximumSize, ttl, lockTimeout);
+    }
+
+    @Bean
+    public FilterRegistrationBean<IdempotencyFilter> idempotencyFilter(
+            IdempotencyStore idempotencyStore,
+            @Value("${library.idempotency.max-body-size:64KB}") DataSize maxBodySize,
+            MeterRegistry meterRegistry) {
+        FilterRegistrationBean<IdempotencyFilter> registration = new FilterRegistrationBean<>(
+                new IdempotencyFilter(idempotencyStore, maxBodySize.toBytes(), meterRegistry));
+        registration.addUrlPatterns("/books/*", "/users/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 20);
+        return registration;
+    }
+}
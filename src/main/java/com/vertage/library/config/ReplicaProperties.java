@@ -0,0 +1,30 @@
+package com.vertage.library.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read replicas, e.g. {@code library.datasource.replicas[0].url=jdbc:mysql://replica-1:3306/vertage}.
+ * Credentials and driver default to the primary's {@code spring.datasource.*} settings.
+ */
+@Data
+@ConfigurationProperties("library.datasource")
+public class ReplicaProperties {
+
+    private List<Replica> replicas = new ArrayList<>();
+
+    @Data
+    public static class Replica {
+
+        private String url;
+
+        private String username;
+
+        private String password;
+
+        private int maximumPoolSize = 10;
+    }
+}
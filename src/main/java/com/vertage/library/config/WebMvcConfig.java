@@ -0,0 +1,27 @@
+package com.vertage.library.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+
+@Configuration
+@EnableWebMvc
+@ConditionalOnWebApplication
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    /**
+     * Streaming responses such as the catalog export outlive the container's default async timeout.
+     */
+    @Value("${library.web.async-timeout:1h}")
+    private Duration asyncTimeout;
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setDefaultTimeout(asyncTimeout.toMillis());
+    }
+}
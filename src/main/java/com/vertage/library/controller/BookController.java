@@ -1,10 +1,26 @@
 package com.vertage.library.controller;
 
+import com.vertage.library.dto.BookAvailability;
+import com.vertage.library.dto.BookSearchHit;
+import com.vertage.library.dto.BookView;
+import com.vertage.library.dto.LoanRequest;
+import com.vertage.library.dto.LoanResult;
 import com.vertage.library.entity.Book;
+import com.vertage.library.entity.LoanEvent;
+import com.vertage.library.exception.InvalidRequestDataException;
+import com.vertage.library.service.BookAvailabilityService;
+import com.vertage.library.service.BookFeedService;
+import com.vertage.library.service.BookSearchService;
 import com.vertage.library.service.BookService;
+import com.vertage.library.service.GroupCommitService;
+import com.vertage.library.service.LoanHistoryService;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 
@@ -13,17 +29,99 @@ import java.util.List;
 @RequiredArgsConstructor
 public class BookController {
 
+    private static final String LAST_EVENT_ID = "Last-Event-ID";
+
     @NonNull
     private final BookService bookService;
+    @NonNull
+    private final BookAvailabilityService bookAvailabilityService;
+    @NonNull
+    private final BookSearchService bookSearchService;
+    @NonNull
+    private final LoanHistoryService loanHistoryService;
+    @NonNull
+    private final BookFeedService bookFeedService;
+    @NonNull
+    private final GroupCommitService groupCommitService;
 
     @GetMapping
-    public List<Book> getAll() {
-        return bookService.getAll();
+    public ResponseEntity<List<BookView>> getAll(@RequestParam(value = "available", required = false) Boolean available,
+                                             @RequestParam(value = "userId", required = false) Long userId,
+                                             @RequestParam(value = "afterUserId", required = false) Long afterUserId,
+                                             @RequestParam(value = "after", required = false) Long after,
+                                             @RequestParam(value = "limit", defaultValue = PageLinks.DEFAULT_LIMIT) int limit) {
+        List<BookView> books = bookService.getAll(available, userId, afterUserId, after, limit);
+        if (Boolean.FALSE.equals(available) && userId == null) {
+            return PageLinks.page(books, limit, (uri, last) -> uri.replaceQueryParam("afterUserId", last.getHolderId())
+                    .replaceQueryParam("after", last.getId()));
+        }
+        return PageLinks.page(books, limit, BookView::getId);
+    }
+
+    @GetMapping(params = "sort=name")
+    public ResponseEntity<List<BookView>> getAllByName(@RequestParam(value = "available", required = false) Boolean available,
+                                                   @RequestParam(value = "userId", required = false) Long userId,
+                                                   @RequestParam(value = "afterName", required = false) String afterName,
+                                                   @RequestParam(value = "after", required = false) Long after,
+                                                   @RequestParam(value = "limit", defaultValue = PageLinks.DEFAULT_LIMIT) int limit) {
+        if (available != null || userId != null) {
+            throw new InvalidRequestDataException("sort=name cannot be combined with available or userId");
+        }
+        return PageLinks.page(bookService.getAllByName(afterName, after, limit), limit,
+                (uri, last) -> uri.replaceQueryParam("afterName", last.getName())
+                        .replaceQueryParam("after", last.getId()));
+    }
+
+    @GetMapping("search")
+    public ResponseEntity<List<BookSearchHit>> search(@RequestParam("q") String query,
+                                                      @RequestParam(value = "afterScore", required = false) Integer afterScore,
+                                                      @RequestParam(value = "after", required = false) Long after,
+                                                      @RequestParam(value = "limit", defaultValue = PageLinks.DEFAULT_LIMIT) int limit) {
+        return PageLinks.page(bookSearchService.search(query, afterScore, after, limit), limit,
+                (uri, last) -> uri.replaceQueryParam("afterScore", last.getScore())
+                        .replaceQueryParam("after", last.getId()));
+    }
+
+    /**
+     * Server-sent events for every committed take, return, save and delete. Browsers resume with the
+     * {@code Last-Event-ID} header on their own; other clients may pass the id as {@code lastEventId}.
+     */
+    @GetMapping(value = "events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter events(@RequestHeader(value = LAST_EVENT_ID, required = false) String lastEventIdHeader,
+                             @RequestParam(value = "lastEventId", required = false) String lastEventId) {
+        return bookFeedService.subscribe(lastEventIdHeader != null ? lastEventIdHeader : lastEventId);
+    }
+
+    @GetMapping("batch")
+    public List<BookView> getBatch(@RequestParam("ids") List<Long> ids) {
+        return bookService.getViewsByIds(ids);
     }
 
+    @GetMapping("availability")
+    public List<BookAvailability> getAvailability(@RequestParam("ids") List<Long> ids) {
+        return bookAvailabilityService.getAvailability(ids);
+    }
+
+    @GetMapping("{id}/availability")
+    public BookAvailability getAvailability(@PathVariable("id") Long id) {
+        return bookAvailabilityService.getAvailability(id);
+    }
+
+    @GetMapping("{id}/loans")
+    public ResponseEntity<List<LoanEvent>> getLoans(@PathVariable("id") Long id,
+                                                    @RequestParam(value = "after", required = false) Long after,
+                                                    @RequestParam(value = "limit", defaultValue = PageLinks.DEFAULT_LIMIT) int limit) {
+        return PageLinks.page(loanHistoryService.getByBook(id, after, limit), limit, LoanEvent::getId);
+    }
+
+    /**
+     * The view is usually served from the cache, so a matching {@code If-None-Match} costs no query;
+     * Spring answers it with 304 from the entity tag.
+     */
     @GetMapping("{id}")
-    public Book get(@PathVariable("id") Long id) {
-        return bookService.getById(id);
+    public ResponseEntity<BookView> get(@PathVariable("id") Long id) {
+        BookView book = bookService.getViewById(id);
+        return ResponseEntity.ok().eTag(book.getRevision()).body(book);
     }
 
     @PostMapping
@@ -36,21 +134,44 @@ public class BookController {
         bookService.deleteById(id);
     }
 
+    @DeleteMapping(params = "ids")
+    public int deleteAll(@RequestParam("ids") List<Long> ids) {
+        return bookService.deleteByIds(ids);
+    }
+
     @PutMapping("{id}")
     public Book update(@PathVariable("id") Long id,
+                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
                        @RequestBody Book book) {
-        book.setId(id);
-        return bookService.save(book);
+        return bookService.update(id, book, ETags.ifMatch(ifMatch));
     }
 
     @PatchMapping("{id}/take")
     public void takeBookByUser(@PathVariable("id") Long id,
                                @RequestParam("userId") Long userId) {
-        bookService.takeBook(id, userId);
+        if (groupCommitService.isEnabled()) {
+            groupCommitService.takeBook(id, userId);
+        } else {
+            bookService.takeBook(id, userId);
+        }
     }
 
     @PatchMapping("{id}/return")
     public void returnBookByUser(@PathVariable("id") Long id) {
-        bookService.returnBook(id);
+        if (groupCommitService.isEnabled()) {
+            groupCommitService.returnBook(id);
+        } else {
+            bookService.returnBook(id);
+        }
+    }
+
+    @PatchMapping("take")
+    public List<LoanResult> takeBooks(@RequestBody List<LoanRequest> requests) {
+        return bookService.takeBooks(requests);
+    }
+
+    @PatchMapping("return")
+    public List<LoanResult> returnBooks(@RequestBody List<Long> bookIds) {
+        return bookService.returnBooks(bookIds);
     }
 }
@@ -0,0 +1,65 @@
+package com.vertage.library.controller;
+
+import com.vertage.library.dto.DataFormat;
+import com.vertage.library.dto.ImportReport;
+import com.vertage.library.service.CatalogExportService;
+import com.vertage.library.service.CatalogImportService;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.InputStream;
+import java.util.zip.GZIPOutputStream;
+
+@RestController
+@RequiredArgsConstructor
+public class CatalogController {
+
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String CSV = "text/csv";
+    private static final MediaType GZIP = MediaType.parseMediaType("application/gzip");
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    @NonNull
+    private final CatalogImportService catalogImportService;
+    @NonNull
+    private final CatalogExportService catalogExportService;
+
+    @PostMapping(value = "books/import", consumes = {NDJSON, CSV})
+    public ImportReport importBooks(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                    InputStream body) {
+        return catalogImportService.importBooks(body, DataFormat.of(contentType));
+    }
+
+    @PostMapping(value = "users/import", consumes = {NDJSON, CSV})
+    public ImportReport importUsers(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                    InputStream body) {
+        return catalogImportService.importUsers(body, DataFormat.of(contentType));
+    }
+
+    @GetMapping("books/export")
+    public ResponseEntity<StreamingResponseBody> exportBooks(
+            @RequestParam(value = "format", defaultValue = "ndjson") String format) {
+        DataFormat dataFormat = DataFormat.ofName(format);
+        ContentDisposition attachment = ContentDisposition.builder("attachment")
+                .filename("books" + dataFormat.getExtension() + ".gz")
+                .build();
+        return ResponseEntity.ok()
+                .contentType(GZIP)
+                .header(HttpHeaders.CONTENT_DISPOSITION, attachment.toString())
+                .body(out -> {
+                    GZIPOutputStream gzip = new GZIPOutputStream(out, GZIP_BUFFER_SIZE);
+                    catalogExportService.exportBooks(gzip, dataFormat);
+                    gzip.finish();
+                });
+    }
+}
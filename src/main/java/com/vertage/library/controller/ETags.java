@@ -0,0 +1,30 @@
+package com.vertage.library.controller;
+
+import com.vertage.library.exception.PreconditionFailedException;
+
+/**
+ * Reads {@code If-Match}. Entity tags are strong and opaque: the quoted revision of the resource.
+ */
+final class ETags {
+
+    private static final String ANY = "*";
+    private static final String QUOTE = "\"";
+
+    private ETags() {
+    }
+
+    /**
+     * @return the revision the client expects, or {@code null} when there is no header or it accepts any
+     * @throws PreconditionFailedException for a weak or malformed tag, which can never match strongly
+     */
+    static String ifMatch(String header) {
+        if (header == null || ANY.equals(header.trim())) {
+            return null;
+        }
+        String tag = header.trim();
+        if (tag.length() < 2 || !tag.startsWith(QUOTE) || !tag.endsWith(QUOTE)) {
+            throw new PreconditionFailedException();
+        }
+        return tag.substring(1, tag.length() - 1);
+    }
+}
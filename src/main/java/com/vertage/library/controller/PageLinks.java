@@ -0,0 +1,41 @@
+package com.vertage.library.controller;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Builds keyset-paginated responses: the body is the page itself and the cursor for the
+ * following page travels in an RFC 8288 {@code Link: <...>; rel="next"} header.
+ */
+final class PageLinks {
+
+    static final String DEFAULT_LIMIT = "50";
+
+    private PageLinks() {
+    }
+
+    static <T> ResponseEntity<List<T>> page(List<T> items, int limit, Function<T, Long> idOf) {
+        return page(items, limit, (uri, last) -> uri.replaceQueryParam("after", idOf.apply(last)));
+    }
+
+    /**
+     * @param cursor writes the query parameters that resume the listing after the given last item
+     */
+    static <T> ResponseEntity<List<T>> page(List<T> items, int limit, BiConsumer<UriComponentsBuilder, T> cursor) {
+        if (items.size() < limit) {
+            return ResponseEntity.ok(items);
+        }
+        UriComponentsBuilder uri = ServletUriComponentsBuilder.fromCurrentRequest();
+        cursor.accept(uri, items.get(items.size() - 1));
+        String next = uri.replaceQueryParam("limit", limit).toUriString();
+        return ResponseEntity.ok()
+                .header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"")
+                .body(items);
+    }
+}
@@ -1,9 +1,14 @@
 package com.vertage.library.controller;
 
+import com.vertage.library.dto.UserView;
+import com.vertage.library.entity.LoanEvent;
 import com.vertage.library.entity.User;
+import com.vertage.library.service.LoanHistoryService;
 import com.vertage.library.service.UserService;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -15,15 +20,26 @@ public class UserController {
 
     @NonNull
     private final UserService userService;
+    @NonNull
+    private final LoanHistoryService loanHistoryService;
 
     @GetMapping
-    public List<User> getAll() {
-        return userService.getAll();
+    public ResponseEntity<List<UserView>> getAll(@RequestParam(value = "after", required = false) Long after,
+                                         @RequestParam(value = "limit", defaultValue = PageLinks.DEFAULT_LIMIT) int limit) {
+        return PageLinks.page(userService.getAll(after, limit), limit, UserView::getId);
     }
 
     @GetMapping("{id}")
-    public User get(@PathVariable("id") Long id) {
-        return userService.getById(id);
+    public ResponseEntity<UserView> get(@PathVariable("id") Long id) {
+        UserView user = userService.getViewById(id);
+        return ResponseEntity.ok().eTag(user.getRevision()).body(user);
+    }
+
+    @GetMapping("{id}/loans")
+    public ResponseEntity<List<LoanEvent>> getLoans(@PathVariable("id") Long id,
+                                                    @RequestParam(value = "after", required = false) Long after,
+                                                    @RequestParam(value = "limit", defaultValue = PageLinks.DEFAULT_LIMIT) int limit) {
+        return PageLinks.page(loanHistoryService.getByUser(id, after, limit), limit, LoanEvent::getId);
     }
 
     @PostMapping
@@ -32,14 +48,25 @@ public class UserController {
     }
 
     @DeleteMapping("{id}")
-    public void delete(@PathVariable("id") Long id) {
-        userService.deleteById(id);
+    public void delete(@PathVariable("id") Long id,
+                       @RequestParam(value = "releaseBooks", defaultValue = "false") boolean releaseBooks) {
+        if (releaseBooks) {
+            userService.releaseBooksAndDeleteById(id);
+        } else {
+            userService.deleteById(id);
+        }
+    }
+
+    @DeleteMapping(params = "ids")
+    public int deleteAll(@RequestParam("ids") List<Long> ids,
+                         @RequestParam(value = "releaseBooks", defaultValue = "false") boolean releaseBooks) {
+        return userService.deleteByIds(ids, releaseBooks);
     }
 
     @PutMapping("{id}")
     public User update(@PathVariable("id") Long id,
+                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
                        @RequestBody User user) {
-        user.setId(id);
-        return userService.save(user);
+        return userService.update(id, user, ETags.ifMatch(ifMatch));
     }
 }
@@ -0,0 +1,17 @@
+package com.vertage.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookAvailability {
+
+    private Long bookId;
+
+    private boolean available;
+
+    private Long userId;
+}
@@ -0,0 +1,29 @@
+package com.vertage.library.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.vertage.library.event.BookChangedEvent;
+import lombok.Value;
+
+/**
+ * One committed book change as sent on {@code GET /books/events}; the sequence travels as the SSE event id.
+ */
+@Value
+public class BookFeedEvent {
+
+    @JsonIgnore
+    long sequence;
+
+    BookChangedEvent.Type type;
+
+    long bookId;
+
+    /**
+     * Holder after the change; {@code null} when the book is free.
+     */
+    Long userId;
+
+    /**
+     * Book name after the change; set for {@link BookChangedEvent.Type#SAVED} only.
+     */
+    String name;
+}
@@ -0,0 +1,20 @@
+package com.vertage.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookSearchHit {
+
+    private Long id;
+
+    private String name;
+
+    /**
+     * Relevance, higher is better; hits are ordered by score descending, then by id.
+     */
+    private int score;
+}
@@ -0,0 +1,36 @@
+package com.vertage.library.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Value;
+
+/**
+ * Read model of a book, built by a JPQL constructor query: no proxy, no persistence-context entry.
+ */
+@Value
+public class BookView {
+
+    Long id;
+
+    String name;
+
+    Long holderId;
+
+    String holderName;
+
+    @JsonIgnore
+    long version;
+
+    /**
+     * {@code null} when the book is free.
+     */
+    @JsonIgnore
+    Long holderVersion;
+
+    /**
+     * Changes whenever the representation does: the book is written or its holder renamed.
+     */
+    @JsonIgnore
+    public String getRevision() {
+        return holderVersion == null ? String.valueOf(version) : version + "-" + holderVersion;
+    }
+}
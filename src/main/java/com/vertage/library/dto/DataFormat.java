@@ -0,0 +1,48 @@
+package com.vertage.library.dto;
+
+import com.vertage.library.exception.InvalidRequestDataException;
+import org.springframework.http.MediaType;
+
+public enum DataFormat {
+    NDJSON("application/x-ndjson", ".ndjson"),
+    CSV("text/csv", ".csv");
+
+    private final MediaType mediaType;
+
+    private final String extension;
+
+    DataFormat(String mediaType, String extension) {
+        this.mediaType = MediaType.parseMediaType(mediaType);
+        this.extension = extension;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public static DataFormat of(MediaType contentType) {
+        for (DataFormat format : values()) {
+            if (format.mediaType.includes(contentType)) {
+                return format;
+            }
+        }
+        throw new InvalidRequestDataException("Unsupported format: " + contentType);
+    }
+
+    public static DataFormat ofName(String name) {
+        for (DataFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new InvalidRequestDataException("Unsupported format: " + name);
+    }
+
+    public static DataFormat ofFileName(String fileName) {
+        return fileName.replaceFirst("\\.gz$", "").endsWith(CSV.extension) ? CSV : NDJSON;
+    }
+}
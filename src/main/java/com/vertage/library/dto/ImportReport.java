@@ -0,0 +1,33 @@
+package com.vertage.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImportReport {
+
+    /**
+     * Only the first errors are kept so that a completely broken file cannot grow the report without bound.
+     */
+    public static final int MAX_ERRORS = 100;
+
+    private long imported;
+
+    private long failed;
+
+    private int chunks;
+
+    private List<String> errors = new ArrayList<>();
+
+    public void addError(String error) {
+        if (errors.size() < MAX_ERRORS) {
+            errors.add(error);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.vertage.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LoanRequest {
+
+    private Long bookId;
+
+    private Long userId;
+}
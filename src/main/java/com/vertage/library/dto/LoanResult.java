@@ -0,0 +1,17 @@
+package com.vertage.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LoanResult {
+
+    private Long bookId;
+
+    private Long userId;
+
+    private LoanStatus status;
+}
@@ -0,0 +1,8 @@
+package com.vertage.library.dto;
+
+public enum LoanStatus {
+    OK,
+    BOOK_NOT_FOUND,
+    USER_NOT_FOUND,
+    ALREADY_TAKEN
+}
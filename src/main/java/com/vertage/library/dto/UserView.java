@@ -0,0 +1,28 @@
+package com.vertage.library.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Value;
+
+/**
+ * Read model of a user, built by a JPQL constructor query; the books are counted, not loaded.
+ */
+@Value
+public class UserView {
+
+    Long id;
+
+    String name;
+
+    long bookCount;
+
+    @JsonIgnore
+    long version;
+
+    /**
+     * Changes whenever the representation does: the user is written or takes or returns a book.
+     */
+    @JsonIgnore
+    public String getRevision() {
+        return version + "-" + bookCount;
+    }
+}
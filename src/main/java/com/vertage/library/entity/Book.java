@@ -1,6 +1,7 @@
 package com.vertage.library.entity;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -15,7 +16,8 @@ import javax.persistence.*;
 public class Book {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "book_seq")
+    @SequenceGenerator(name = "book_seq", sequenceName = "book_seq", allocationSize = 50)
     @Column(name = "id")
     private Long id;
 
@@ -25,4 +27,16 @@ public class Book {
     @JsonBackReference
     @ManyToOne(fetch = FetchType.LAZY)
     private User user;
+
+    /**
+     * Sent as the entity tag rather than in the body.
+     */
+    @JsonIgnore
+    @Version
+    @Column(name = "version")
+    private long version;
+
+    public Book(Long id, String name, User user) {
+        this(id, name, user, 0L);
+    }
 }
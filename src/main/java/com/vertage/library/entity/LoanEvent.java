@@ -0,0 +1,49 @@
+package com.vertage.library.entity;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * One line of the loan history. Rows are appended in batches by the history writer and never updated.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Immutable
+@Table(name = "tb_loan_event")
+public class LoanEvent {
+
+    public enum Type {
+        TAKEN,
+        RETURNED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "book_id")
+    private Long bookId;
+
+    /**
+     * Borrower; {@code null} for a return when the take that started the loan was never recorded.
+     */
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type")
+    private Type type;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    @Column(name = "occurred_at")
+    private Instant occurredAt;
+}
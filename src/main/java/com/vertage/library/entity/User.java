@@ -1,5 +1,6 @@
 package com.vertage.library.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -17,7 +18,8 @@ import java.util.List;
 public class User {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_seq")
+    @SequenceGenerator(name = "user_seq", sequenceName = "user_seq", allocationSize = 50)
     @Column(name = "id")
     private Long id;
 
@@ -27,4 +29,17 @@ public class User {
     @JsonManagedReference
     @OneToMany(mappedBy = "user", cascade = CascadeType.PERSIST)
     private List<Book> books = new ArrayList<>();
+
+    /**
+     * Covers the user's own columns only; the entity tag also covers the held books, see
+     * {@link com.vertage.library.dto.UserView#getRevision()}.
+     */
+    @JsonIgnore
+    @Version
+    @Column(name = "version")
+    private long version;
+
+    public User(Long id, String name, List<Book> books) {
+        this(id, name, books, 0L);
+    }
 }
@@ -0,0 +1,44 @@
+package com.vertage.library.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+/**
+ * Published by the book service for every change to a book; listeners that mirror book state
+ * outside the database subscribe to it after commit.
+ */
+@Value
+@AllArgsConstructor
+public class BookChangedEvent {
+
+    public enum Type {
+        SAVED,
+        DELETED,
+        TAKEN,
+        RETURNED
+    }
+
+    Type type;
+
+    long bookId;
+
+    /**
+     * Holder after the change; {@code null} when the book is free or the holder is not known.
+     */
+    Long userId;
+
+    /**
+     * Book name after the change; set for {@link Type#SAVED} only.
+     */
+    String name;
+
+    /**
+     * Holder before the change, read under the book's row lock; set for {@link Type#RETURNED} only, and
+     * {@code null} when the book was already free.
+     */
+    Long previousUserId;
+
+    public BookChangedEvent(Type type, long bookId, Long userId, String name) {
+        this(type, bookId, userId, name, null);
+    }
+}
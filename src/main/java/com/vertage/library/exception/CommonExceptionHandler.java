@@ -1,25 +1,70 @@
 package com.vertage.library.exception;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 
+/**
+ * Every handled exception also increments {@code library.errors} tagged with its type.
+ */
 @ControllerAdvice
+@RequiredArgsConstructor
 public class CommonExceptionHandler {
+
+    static final String ERRORS = "library.errors";
+
+    @NonNull
+    private final MeterRegistry meterRegistry;
+
     @ExceptionHandler(UserNotFoundException.class)
     public ResponseEntity<Object> handleUserNotFoundException(UserNotFoundException ex) {
+        count(ex);
         return new ResponseEntity<>("User not found", HttpStatus.NOT_FOUND);
     }
 
     @ExceptionHandler(BookNotFoundException.class)
     public ResponseEntity<Object> handleBookNotFoundException(BookNotFoundException ex) {
+        count(ex);
         return new ResponseEntity<>("Book not found", HttpStatus.NOT_FOUND);
     }
 
     @ExceptionHandler(InvalidRequestDataException.class)
     public ResponseEntity<Object> handleInvalidRequestDataException(InvalidRequestDataException ex) {
+        count(ex);
         return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<Object> handlePreconditionFailedException(PreconditionFailedException ex) {
+        count(ex);
+        return new ResponseEntity<>("The resource has changed since it was read", HttpStatus.PRECONDITION_FAILED);
+    }
+
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    public ResponseEntity<Object> handleOptimisticLockingFailureException(ObjectOptimisticLockingFailureException ex) {
+        count(ex);
+        return new ResponseEntity<>("The resource was changed concurrently, please retry", HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(UserHoldsBooksException.class)
+    public ResponseEntity<Object> handleUserHoldsBooksException(UserHoldsBooksException ex) {
+        count(ex);
+        return new ResponseEntity<>("The user still holds books, return them first or pass releaseBooks=true",
+                HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<Object> handleServiceUnavailableException(ServiceUnavailableException ex) {
+        count(ex);
+        return new ResponseEntity<>(ex.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    private void count(Exception ex) {
+        meterRegistry.counter(ERRORS, "exception", ex.getClass().getSimpleName()).increment();
+    }
 }
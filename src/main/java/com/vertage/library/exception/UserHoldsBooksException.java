@@ -0,0 +1,4 @@
+package com.vertage.library.exception;
+
+public class UserHoldsBooksException extends RuntimeException {
+}
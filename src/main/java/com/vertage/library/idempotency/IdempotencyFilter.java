@@ -0,0 +1,141 @@
+package com.vertage.library.idempotency;
+
+import com.vertage.library.util.BufferedBodyRequest;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Makes mutations safe to retry: a POST, PUT, PATCH or DELETE carrying an {@code Idempotency-Key} header
+ * runs once, and a later request with the same key gets the stored response replayed without reaching
+ * the controller. Responses that a retry might improve on, 5xx, 409 and 429, are not stored.
+ * <p>
+ * A key is bound to the request it first came with: reusing it with another method, URI or body is
+ * answered with 422, and a retry arriving while the first request is still running with 409.
+ * The body is buffered to fingerprint the request, so such requests are limited to the max body size.
+ */
+@RequiredArgsConstructor
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    public static final String REPLAYS = "library.idempotency.replays";
+
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final Set<String> METHODS = new HashSet<>(Arrays.asList("POST", "PUT", "PATCH", "DELETE"));
+
+    @NonNull
+    private final IdempotencyStore store;
+
+    private final long maxBodySize;
+
+    @NonNull
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !METHODS.contains(request.getMethod()) || request.getHeader(HEADER) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String key = request.getHeader(HEADER);
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            reject(response, HttpStatus.BAD_REQUEST, HEADER + " must have 1 to " + MAX_KEY_LENGTH + " characters");
+            return;
+        }
+        byte[] body = BufferedBodyRequest.readBody(request, maxBodySize);
+        if (body == null) {
+            reject(response, HttpStatus.PAYLOAD_TOO_LARGE,
+                    "Requests with an " + HEADER + " are limited to " + maxBodySize + " bytes");
+            return;
+        }
+        String fingerprint = fingerprint(request, body);
+        IdempotencyRecord existing = store.reserve(key, fingerprint);
+        if (existing != null) {
+            answer(response, existing, fingerprint);
+            return;
+        }
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        boolean completed = false;
+        try {
+            chain.doFilter(new BufferedBodyRequest(request, body), wrapper);
+            if (isReplayable(wrapper.getStatus())) {
+                store.complete(key, new IdempotencyRecord(fingerprint, wrapper.getStatus(),
+                        wrapper.getContentType(), wrapper.getContentAsByteArray()));
+                completed = true;
+            }
+        } finally {
+            if (!completed) {
+                store.release(key);
+            }
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    private static boolean isReplayable(int status) {
+        return status < 500 && status != HttpStatus.CONFLICT.value() && status != HttpStatus.TOO_MANY_REQUESTS.value();
+    }
+
+    private void answer(HttpServletResponse response, IdempotencyRecord existing, String fingerprint)
+            throws IOException {
+        if (existing.isInProgress()) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            reject(response, HttpStatus.CONFLICT, "A request with this " + HEADER + " is still in progress");
+        } else if (!existing.getFingerprint().equals(fingerprint)) {
+            reject(response, HttpStatus.UNPROCESSABLE_ENTITY, "The " + HEADER + " was used for a different request");
+        } else {
+            meterRegistry.counter(REPLAYS).increment();
+            response.setStatus(existing.getStatus());
+            response.setHeader(REPLAYED_HEADER, "true");
+            if (existing.getContentType() != null) {
+                response.setContentType(existing.getContentType());
+            }
+            if (existing.getBody() != null) {
+                response.setContentLength(existing.getBody().length);
+                response.getOutputStream().write(existing.getBody());
+            }
+        }
+    }
+
+    private static void reject(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType("text/plain");
+        response.getWriter().write(message);
+    }
+
+    private static String fingerprint(HttpServletRequest request, byte[] body) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(request.getMethod().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) ' ');
+            digest.update(request.getRequestURI().getBytes(StandardCharsets.UTF_8));
+            if (request.getQueryString() != null) {
+                digest.update((byte) '?');
+                digest.update(request.getQueryString().getBytes(StandardCharsets.UTF_8));
+            }
+            digest.update((byte) '\n');
+            return Base64.getEncoder().encodeToString(digest.digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.vertage.library.idempotency;
+
+import lombok.Value;
+
+/**
+ * What is kept under an idempotency key: the request it was first used for and, once that request
+ * has completed, its response.
+ */
+@Value
+public class IdempotencyRecord {
+
+    private static final int IN_PROGRESS = 0;
+
+    /**
+     * Hash of the method, URI and body of the request.
+     */
+    String fingerprint;
+
+    /**
+     * Response status, {@code 0} while the request is still running.
+     */
+    int status;
+
+    String contentType;
+
+    byte[] body;
+
+    public static IdempotencyRecord inProgress(String fingerprint) {
+        return new IdempotencyRecord(fingerprint, IN_PROGRESS, null, null);
+    }
+
+    public boolean isInProgress() {
+        return status == IN_PROGRESS;
+    }
+}
@@ -0,0 +1,21 @@
+package com.vertage.library.idempotency;
+
+public interface IdempotencyStore {
+
+    /**
+     * Reserves the key for a request about to run.
+     *
+     * @return {@code null} if the key was free and is now reserved, otherwise what is stored under it
+     */
+    IdempotencyRecord reserve(String key, String fingerprint);
+
+    /**
+     * Stores the response of the request the key was reserved for.
+     */
+    void complete(String key, IdempotencyRecord record);
+
+    /**
+     * Frees a reserved key whose request produced no response worth replaying, so a retry runs again.
+     */
+    void release(String key);
+}
@@ -0,0 +1,56 @@
+package com.vertage.library.idempotency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import java.time.Duration;
+
+/**
+ * Keys kept in a bounded Caffeine cache of this instance. A completed response is kept for the TTL, a
+ * reservation only for the lock timeout, so a request that never finished does not block its key for long.
+ * A retry reaching another instance runs again.
+ */
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    private final Cache<String, IdempotencyRecord> records;
+
+    public InMemoryIdempotencyStore(long maximumSize, Duration ttl, Duration lockTimeout) {
+        records = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<String, IdempotencyRecord>() {
+                    @Override
+                    public long expireAfterCreate(String key, IdempotencyRecord record, long currentTime) {
+                        return (record.isInProgress() ? lockTimeout : ttl).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, IdempotencyRecord record, long currentTime,
+                                                  long currentDuration) {
+                        return expireAfterCreate(key, record, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, IdempotencyRecord record, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    @Override
+    public IdempotencyRecord reserve(String key, String fingerprint) {
+        return records.asMap().putIfAbsent(key, IdempotencyRecord.inProgress(fingerprint));
+    }
+
+    @Override
+    public void complete(String key, IdempotencyRecord record) {
+        records.put(key, record);
+    }
+
+    @Override
+    public void release(String key) {
+        records.asMap().computeIfPresent(key, (k, record) -> record.isInProgress() ? null : record);
+    }
+}
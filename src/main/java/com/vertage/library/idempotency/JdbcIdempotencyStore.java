@@ -0,0 +1,157 @@
+package com.vertage.library.idempotency;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keys kept in {@code tb_idempotency_key}, shared by all instances. The primary key on the idempotency key
+ * makes the reservation atomic. Expired rows are replaced when their key comes back and purged in the
+ * background.
+ */
+@Slf4j
+public class JdbcIdempotencyStore implements IdempotencyStore, InitializingBean, DisposableBean {
+
+    static final String INSERT_SQL = "INSERT INTO tb_idempotency_key (idempotency_key, fingerprint, status, created_at)"
+            + " VALUES (:key, :fingerprint, 0, :now)";
+
+    static final String SELECT_SQL = "SELECT fingerprint, status, content_type, body, created_at"
+            + " FROM tb_idempotency_key WHERE idempotency_key = :key";
+
+    static final String COMPLETE_SQL = "UPDATE tb_idempotency_key"
+            + " SET status = :status, content_type = :contentType, body = :body, created_at = :now"
+            + " WHERE idempotency_key = :key";
+
+    static final String RELEASE_SQL = "DELETE FROM tb_idempotency_key WHERE idempotency_key = :key AND status = 0";
+
+    static final String REPLACE_SQL = "DELETE FROM tb_idempotency_key WHERE idempotency_key = :key AND created_at = :createdAt";
+
+    static final String PURGE_SQL = "DELETE FROM tb_idempotency_key WHERE created_at < :before";
+
+    private static final int ATTEMPTS = 3;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    private final Duration ttl;
+
+    private final Duration lockTimeout;
+
+    private ScheduledExecutorService purger;
+
+    public JdbcIdempotencyStore(NamedParameterJdbcTemplate jdbcTemplate, Duration ttl, Duration lockTimeout) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ttl = ttl;
+        this.lockTimeout = lockTimeout;
+    }
+
+    /**
+     * A key held by an expired row is taken over by deleting exactly that row and inserting again;
+     * when another request wins the insert, its reservation is returned.
+     */
+    @Override
+    public IdempotencyRecord reserve(String key, String fingerprint) {
+        for (int attempt = 0; attempt < ATTEMPTS; attempt++) {
+            try {
+                jdbcTemplate.update(INSERT_SQL, new MapSqlParameterSource()
+                        .addValue("key", key)
+                        .addValue("fingerprint", fingerprint)
+                        .addValue("now", Timestamp.from(Instant.now())));
+                return null;
+            } catch (DuplicateKeyException e) {
+                Stored existing = find(key);
+                if (existing == null) {
+                    continue;
+                }
+                if (!existing.isExpired()) {
+                    return existing.record;
+                }
+                jdbcTemplate.update(REPLACE_SQL, new MapSqlParameterSource()
+                        .addValue("key", key)
+                        .addValue("createdAt", existing.createdAt));
+            }
+        }
+        return IdempotencyRecord.inProgress(fingerprint);
+    }
+
+    @Override
+    public void complete(String key, IdempotencyRecord record) {
+        jdbcTemplate.update(COMPLETE_SQL, new MapSqlParameterSource()
+                .addValue("key", key)
+                .addValue("status", record.getStatus())
+                .addValue("contentType", record.getContentType())
+                .addValue("body", record.getBody())
+                .addValue("now", Timestamp.from(Instant.now())));
+    }
+
+    @Override
+    public void release(String key) {
+        jdbcTemplate.update(RELEASE_SQL, new MapSqlParameterSource("key", key));
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("idempotency-purge-");
+        threadFactory.setDaemon(true);
+        purger = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        long period = lockTimeout.toMillis();
+        purger.scheduleWithFixedDelay(this::purge, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        purger.shutdownNow();
+    }
+
+    /**
+     * Deletes completed responses past the TTL; reservations past the lock timeout go as soon as
+     * their key is used again.
+     */
+    void purge() {
+        try {
+            int purged = jdbcTemplate.update(PURGE_SQL,
+                    new MapSqlParameterSource("before", Timestamp.from(Instant.now().minus(ttl))));
+            log.debug("Purged {} expired idempotency keys", purged);
+        } catch (DataAccessException e) {
+            log.warn("Could not purge expired idempotency keys", e);
+        }
+    }
+
+    private Stored find(String key) {
+        List<Stored> rows = jdbcTemplate.query(SELECT_SQL, new MapSqlParameterSource("key", key),
+                (rs, rowNum) -> new Stored(
+                        new IdempotencyRecord(rs.getString("fingerprint"), rs.getInt("status"),
+                                rs.getString("content_type"), rs.getBytes("body")),
+                        rs.getTimestamp("created_at")));
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private final class Stored {
+
+        private final IdempotencyRecord record;
+
+        private final Timestamp createdAt;
+
+        Stored(IdempotencyRecord record, Timestamp createdAt) {
+            this.record = record;
+            this.createdAt = createdAt;
+        }
+
+        boolean isExpired() {
+            Duration lifetime = record.isInProgress() ? lockTimeout : ttl;
+            return createdAt.toInstant().plus(lifetime).isBefore(Instant.now());
+        }
+    }
+}
@@ -1,7 +1,105 @@
 package com.vertage.library.repository;
 
+import com.vertage.library.dto.BookView;
 import com.vertage.library.entity.Book;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface BookRepository extends JpaRepository<Book, Long> {
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface BookRepository extends JpaRepository<Book, Long>, BookRepositoryCustom {
+
+    /**
+     * Hands a free book to an existing user in one statement; the row lock taken by the UPDATE
+     * makes the availability check and the write atomic, so concurrent takes cannot both succeed.
+     */
+    String TAKE_BOOK_SQL = "UPDATE tb_book SET user_id = :userId, version = version + 1"
+            + " WHERE id = :bookId AND user_id IS NULL"
+            + " AND EXISTS (SELECT 1 FROM tb_user WHERE id = :userId)";
+
+    String RETURN_BOOK_SQL = "UPDATE tb_book SET user_id = NULL, version = version + 1 WHERE id = :bookId";
+
+    String RELEASE_BOOKS_SQL = "UPDATE tb_book SET user_id = NULL, version = version + 1 WHERE user_id IN (:userIds)";
+
+    String VIEW_SELECT = "select new com.vertage.library.dto.BookView(b.id, b.name, u.id, u.name, b.version, u.version)"
+            + " from Book b left join b.user u";
+
+    /**
+     * Opens its own transaction, as the coalesced lookup in the service runs without one. It is not read-only:
+     * the result is cached, so it must come from the primary rather than a replica.
+     */
+    @Transactional
+    @Query(VIEW_SELECT + " where b.id = :id")
+    Optional<BookView> findViewById(@Param("id") Long id);
+
+    @Query(VIEW_SELECT + " where b.id in :ids")
+    List<BookView> findViewsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query(VIEW_SELECT + " where b.id > :id order by b.id")
+    List<BookView> findViewsAfter(@Param("id") Long id, Pageable pageable);
+
+    /*
+     * The filtered pages below are range scans over idx_book_user_id (user_id, id) with no sort.
+     * Free books and the books of one holder fix the leading column and the cursor walks id;
+     * taken books span many holders, so they are ordered and resumed by (user_id, id).
+     */
+
+    @Query(VIEW_SELECT + " where b.user is null and b.id > :id order by b.id")
+    List<BookView> findAvailableViewsAfter(@Param("id") Long id, Pageable pageable);
+
+    @Query(VIEW_SELECT + " where b.user.id > :userId or (b.user.id = :userId and b.id > :id) order by b.user.id, b.id")
+    List<BookView> findTakenViewsAfter(@Param("userId") Long userId, @Param("id") Long id, Pageable pageable);
+
+    @Query(VIEW_SELECT + " where b.user.id = :userId and b.id > :id order by b.id")
+    List<BookView> findViewsByHolderAfter(@Param("userId") Long userId, @Param("id") Long id, Pageable pageable);
+
+    /**
+     * Keyset page in (name, id) order, served by idx_book_name. Books without a name are not listed.
+     */
+    @Query(VIEW_SELECT + " where b.name > :name or (b.name = :name and b.id > :id) order by b.name, b.id")
+    List<BookView> findViewsOrderByName(@Param("name") String name, @Param("id") Long id, Pageable pageable);
+
+    /**
+     * @return 1 if the book was taken, 0 if it does not exist, is already taken or the user does not exist
+     */
+    @Modifying(clearAutomatically = true)
+    @Query(value = TAKE_BOOK_SQL, nativeQuery = true)
+    int takeBook(@Param("bookId") Long bookId, @Param("userId") Long userId);
+
+    /**
+     * @return 1 if the book exists, 0 otherwise
+     */
+    @Modifying(clearAutomatically = true)
+    @Query(value = RETURN_BOOK_SQL, nativeQuery = true)
+    int returnBook(@Param("bookId") Long bookId);
+
+    /**
+     * Returns every book the given users hold in one statement, served by idx_book_user_id.
+     *
+     * @return the number of books returned
+     */
+    @Modifying(clearAutomatically = true)
+    @Query(value = RELEASE_BOOKS_SQL, nativeQuery = true)
+    int releaseBooksHeldBy(@Param("userIds") Collection<Long> userIds);
+
+    /**
+     * Locks the existing books among the given ids until the transaction ends.
+     */
+    @Query(value = "SELECT id FROM tb_book WHERE id IN (:ids) ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<Long> lockIdsByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Deletes the books in one statement without loading them.
+     *
+     * @return the number of books deleted
+     */
+    @Modifying(clearAutomatically = true)
+    @Query(value = "DELETE FROM tb_book WHERE id IN (:ids)", nativeQuery = true)
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
 }
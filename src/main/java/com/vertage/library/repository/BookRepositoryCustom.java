@@ -0,0 +1,52 @@
+package com.vertage.library.repository;
+
+import com.vertage.library.dto.LoanRequest;
+import com.vertage.library.util.LongLongConsumer;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ObjLongConsumer;
+
+public interface BookRepositoryCustom {
+
+    /**
+     * Runs {@link BookRepository#TAKE_BOOK_SQL} for every request as one JDBC batch.
+     *
+     * @return affected row count per request, in request order
+     */
+    int[] takeBooks(List<LoanRequest> requests);
+
+    /**
+     * Runs {@link BookRepository#RETURN_BOOK_SQL} for every id as one JDBC batch.
+     *
+     * @return affected row count per id, in request order
+     */
+    int[] returnBooks(List<Long> bookIds);
+
+    /**
+     * Locks the given books until the transaction ends, in id order, so the holders read here are the ones
+     * a following return clears.
+     *
+     * @return the holder of every book found, {@code null} for a free book
+     */
+    Map<Long, Long> lockHolders(Collection<Long> bookIds);
+
+    /**
+     * Locks the books held by the given users until the transaction ends, so none is returned or taken
+     * in between, e.g. before {@link BookRepository#releaseBooksHeldBy(Collection)}.
+     *
+     * @return the holder of every such book, in book id order
+     */
+    Map<Long, Long> lockBooksHeldBy(Collection<Long> userIds);
+
+    /**
+     * Streams {@code (bookId, userId)} for every book, with {@code userId} 0 for free books.
+     */
+    void forEachHolder(LongLongConsumer consumer);
+
+    /**
+     * Streams {@code (name, bookId)} for every book that has a name.
+     */
+    void forEachName(ObjLongConsumer<String> consumer);
+}
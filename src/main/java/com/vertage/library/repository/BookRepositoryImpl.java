@@ -0,0 +1,96 @@
+package com.vertage.library.repository;
+
+import com.vertage.library.dto.LoanRequest;
+import com.vertage.library.util.LongLongConsumer;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ObjLongConsumer;
+
+@RequiredArgsConstructor
+public class BookRepositoryImpl implements BookRepositoryCustom {
+
+    private static final String HOLDERS_SQL = "SELECT id, user_id FROM tb_book";
+
+    private static final String LOCK_HOLDERS_SQL = "SELECT id, user_id FROM tb_book WHERE id IN (:ids)"
+            + " ORDER BY id FOR UPDATE";
+
+    private static final String LOCK_HELD_BY_SQL = "SELECT id, user_id FROM tb_book WHERE user_id IN (:userIds)"
+            + " ORDER BY id FOR UPDATE";
+
+    private static final String NAMES_SQL = "SELECT id, name FROM tb_book WHERE name IS NOT NULL";
+
+    @NonNull
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * {@link Integer#MIN_VALUE} makes MySQL Connector/J stream rows one by one instead of buffering the result.
+     */
+    @Value("${library.jdbc.stream-fetch-size:" + Integer.MIN_VALUE + "}")
+    private int streamFetchSize;
+
+    @Override
+    public int[] takeBooks(List<LoanRequest> requests) {
+        SqlParameterSource[] batch = requests.stream()
+                .map(request -> new MapSqlParameterSource()
+                        .addValue("bookId", request.getBookId())
+                        .addValue("userId", request.getUserId()))
+                .toArray(SqlParameterSource[]::new);
+        return jdbcTemplate.batchUpdate(BookRepository.TAKE_BOOK_SQL, batch);
+    }
+
+    @Override
+    public int[] returnBooks(List<Long> bookIds) {
+        SqlParameterSource[] batch = bookIds.stream()
+                .map(bookId -> new MapSqlParameterSource("bookId", bookId))
+                .toArray(SqlParameterSource[]::new);
+        return jdbcTemplate.batchUpdate(BookRepository.RETURN_BOOK_SQL, batch);
+    }
+
+    @Override
+    public Map<Long, Long> lockHolders(Collection<Long> bookIds) {
+        return holders(LOCK_HOLDERS_SQL, new MapSqlParameterSource("ids", bookIds));
+    }
+
+    @Override
+    public Map<Long, Long> lockBooksHeldBy(Collection<Long> userIds) {
+        return holders(LOCK_HELD_BY_SQL, new MapSqlParameterSource("userIds", userIds));
+    }
+
+    private Map<Long, Long> holders(String sql, SqlParameterSource parameters) {
+        Map<Long, Long> holders = new LinkedHashMap<>();
+        jdbcTemplate.query(sql, parameters, (RowCallbackHandler) row ->
+                holders.put(row.getLong(1), row.getObject(2, Long.class)));
+        return holders;
+    }
+
+    @Override
+    public void forEachHolder(LongLongConsumer consumer) {
+        stream(HOLDERS_SQL, row -> consumer.accept(row.getLong(1), row.getLong(2)));
+    }
+
+    @Override
+    public void forEachName(ObjLongConsumer<String> consumer) {
+        stream(NAMES_SQL, row -> consumer.accept(row.getString(2), row.getLong(1)));
+    }
+
+    private void stream(String sql, RowCallbackHandler handler) {
+        jdbcTemplate.getJdbcTemplate().query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(streamFetchSize);
+            return statement;
+        }, handler);
+    }
+}
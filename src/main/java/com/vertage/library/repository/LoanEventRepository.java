@@ -0,0 +1,17 @@
+package com.vertage.library.repository;
+
+import com.vertage.library.entity.LoanEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface LoanEventRepository extends JpaRepository<LoanEvent, Long>, LoanEventRepositoryCustom {
+
+    String APPEND_SQL = "INSERT INTO tb_loan_event (book_id, user_id, type, occurred_at)"
+            + " VALUES (:bookId, :userId, :type, :occurredAt)";
+
+    List<LoanEvent> findByBookIdAndIdGreaterThanOrderByIdAsc(Long bookId, Long id, Pageable pageable);
+
+    List<LoanEvent> findByUserIdAndIdGreaterThanOrderByIdAsc(Long userId, Long id, Pageable pageable);
+}
@@ -0,0 +1,13 @@
+package com.vertage.library.repository;
+
+import com.vertage.library.entity.LoanEvent;
+
+import java.util.List;
+
+public interface LoanEventRepositoryCustom {
+
+    /**
+     * Appends the events in order as one JDBC batch.
+     */
+    void appendAll(List<LoanEvent> events);
+}
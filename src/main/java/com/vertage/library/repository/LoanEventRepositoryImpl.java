@@ -0,0 +1,30 @@
+package com.vertage.library.repository;
+
+import com.vertage.library.entity.LoanEvent;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class LoanEventRepositoryImpl implements LoanEventRepositoryCustom {
+
+    @NonNull
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Override
+    public void appendAll(List<LoanEvent> events) {
+        SqlParameterSource[] batch = events.stream()
+                .map(event -> new MapSqlParameterSource()
+                        .addValue("bookId", event.getBookId())
+                        .addValue("userId", event.getUserId())
+                        .addValue("type", event.getType().name())
+                        .addValue("occurredAt", Timestamp.from(event.getOccurredAt())))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(LoanEventRepository.APPEND_SQL, batch);
+    }
+}
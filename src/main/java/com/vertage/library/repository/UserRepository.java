@@ -1,7 +1,49 @@
 package com.vertage.library.repository;
 
+import com.vertage.library.dto.UserView;
 import com.vertage.library.entity.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
+
+    String VIEW_SELECT = "select new com.vertage.library.dto.UserView(u.id, u.name, count(b.id), u.version)"
+            + " from User u left join u.books b";
+
+    String VIEW_GROUP_BY = " group by u.id, u.name, u.version";
+
+    /**
+     * Opens its own transaction, as the coalesced lookup in the service runs without one. It is not read-only:
+     * the result is cached, so it must come from the primary rather than a replica.
+     */
+    @Transactional
+    @Query(VIEW_SELECT + " where u.id = :id" + VIEW_GROUP_BY)
+    Optional<UserView> findViewById(@Param("id") Long id);
+
+    /**
+     * One statement per page: the books are counted through idx_book_user_id instead of fetched.
+     */
+    @Query(VIEW_SELECT + " where u.id > :after" + VIEW_GROUP_BY + " order by u.id")
+    List<UserView> findViewsAfter(@Param("after") Long after, Pageable pageable);
+
+    @EntityGraph(attributePaths = "books")
+    Optional<User> findWithBooksById(Long id);
+
+    /**
+     * Deletes the users in one statement without loading them; fails on fk_user if one still holds a book.
+     *
+     * @return the number of users deleted
+     */
+    @Modifying(clearAutomatically = true)
+    @Query(value = "DELETE FROM tb_user WHERE id IN (:ids)", nativeQuery = true)
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
 }
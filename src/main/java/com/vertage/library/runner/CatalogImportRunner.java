@@ -0,0 +1,62 @@
+package com.vertage.library.runner;
+
+import com.vertage.library.dto.DataFormat;
+import com.vertage.library.dto.ImportReport;
+import com.vertage.library.service.CatalogImportService;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Offline catalog import, e.g.
+ * {@code java -jar library.war --spring.main.web-application-type=none --import.users=users.csv --import.books=books.ndjson.gz}.
+ * The format follows the file extension; {@code .gz} files are decompressed on the fly.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CatalogImportRunner implements ApplicationRunner {
+
+    static final String USERS_OPTION = "import.users";
+    static final String BOOKS_OPTION = "import.books";
+
+    @NonNull
+    private final CatalogImportService catalogImportService;
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        importFiles(args.getOptionValues(USERS_OPTION), catalogImportService::importUsers);
+        importFiles(args.getOptionValues(BOOKS_OPTION), catalogImportService::importBooks);
+    }
+
+    private void importFiles(List<String> paths, BiFunction<InputStream, DataFormat, ImportReport> importer)
+            throws IOException {
+        if (paths == null) {
+            return;
+        }
+        for (String path : paths) {
+            log.info("Importing {}", path);
+            try (InputStream in = open(path)) {
+                ImportReport report = importer.apply(in, DataFormat.ofFileName(path));
+                log.info("Imported {}: {}", path, report);
+            }
+        }
+    }
+
+    private static InputStream open(String path) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(Paths.get(path)));
+        return path.endsWith(".gz") ? new GZIPInputStream(in) : in;
+    }
+}
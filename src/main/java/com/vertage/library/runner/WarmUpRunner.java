@@ -0,0 +1,307 @@
+package com.vertage.library.runner;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vertage.library.admission.AdmissionFilter;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationContext;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Warms a fresh instance up before it reports ready. Spring Boot publishes {@code ReadinessState.ACCEPTING_TRAFFIC}
+ * only after every {@link ApplicationRunner} has returned, so until then the readiness probe,
+ * {@code /actuator/health/readiness} with {@code management.endpoint.health.probes.enabled}, keeps traffic away
+ * while this runner:
+ * <ol>
+ *     <li>opens every connection of the connection pools, so the first requests do not wait for them;</li>
+ *     <li>sends read requests to the instance's own port, through Tomcat, the filters, the controllers, Hibernate
+ *     and Jackson, for books and users sampled from the database, until the request count or the max duration
+ *     is reached. The JIT compiles these paths and the caches fill;</li>
+ *     <li>optionally replays the GET requests of {@code library.warm-up.replay-file}, one {@code [GET] /path?query}
+ *     per line as it appeared in an access log, i.e. already URL-encoded. Other methods are skipped, warm-up must
+ *     not change data.</li>
+ * </ol>
+ * Its requests carry {@link AdmissionFilter#WARM_UP} and are not limited while it runs. How long each stage took
+ * is logged and the total recorded in {@value #TIMER}. Failures are logged and never stop the application from
+ * starting.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty("library.warm-up.enabled")
+public class WarmUpRunner implements ApplicationRunner {
+
+    public static final String TIMER = "library.warm-up";
+
+    private static final int PAGE_SIZE = 20;
+    private static final int BATCH_SIZE = 10;
+    private static final int QUERY_LENGTH = 3;
+
+    @NonNull
+    private final ApplicationContext applicationContext;
+
+    @NonNull
+    private final ObjectProvider<HikariDataSource> pools;
+
+    @NonNull
+    private final ObjectMapper objectMapper;
+
+    @NonNull
+    private final MeterRegistry meterRegistry;
+
+    @Value("${library.warm-up.requests:2000}")
+    private int requests;
+
+    @Value("${library.warm-up.concurrency:4}")
+    private int concurrency;
+
+    @Value("${library.warm-up.max-duration:60s}")
+    private Duration maxDuration;
+
+    @Value("${library.warm-up.sample-size:100}")
+    private int sampleSize;
+
+    @Value("${library.warm-up.replay-file:}")
+    private String replayFile;
+
+    @Value("${server.servlet.context-path:}")
+    private String contextPath;
+
+    private volatile boolean running;
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        running = true;
+        try {
+            warmUp();
+        } finally {
+            running = false;
+        }
+    }
+
+    private void warmUp() {
+        long start = System.nanoTime();
+        long deadline = start + maxDuration.toNanos();
+        int connections = openConnections();
+        long pooled = System.nanoTime();
+        if (!(applicationContext instanceof WebServerApplicationContext)
+                || ((WebServerApplicationContext) applicationContext).getWebServer() == null) {
+            log.info("Warm-up opened {} connections in {} ms, no web server to send requests to",
+                    connections, millis(pooled - start));
+            return;
+        }
+        String baseUrl = "http://localhost:"
+                + ((WebServerApplicationContext) applicationContext).getWebServer().getPort() + contextPath;
+        RestTemplate restTemplate = restTemplate();
+        List<String> paths = readPaths(sample(restTemplate, baseUrl + "/books?limit=" + sampleSize),
+                sample(restTemplate, baseUrl + "/users?limit=" + sampleSize));
+        Outcome exercised = send(restTemplate, baseUrl, paths, requests, deadline);
+        long read = System.nanoTime();
+        List<String> replay = replayPaths();
+        Outcome replayed = send(restTemplate, baseUrl, replay, replay.size(), deadline);
+        long end = System.nanoTime();
+        meterRegistry.timer(TIMER).record(end - start, TimeUnit.NANOSECONDS);
+        log.info("Warm-up finished in {} ms: opened {} connections in {} ms, sent {} read requests ({} failed) in {} ms,"
+                        + " replayed {} requests ({} failed) in {} ms",
+                millis(end - start), connections, millis(pooled - start),
+                exercised.sent, exercised.failed, millis(read - pooled),
+                replayed.sent, replayed.failed, millis(end - read));
+    }
+
+    /**
+     * Holds as many connections at once as each pool allows, so each of them is opened.
+     */
+    private int openConnections() {
+        int opened = 0;
+        for (HikariDataSource pool : pools.orderedStream().collect(Collectors.toList())) {
+            List<Connection> held = new ArrayList<>();
+            try {
+                while (held.size() < pool.getMaximumPoolSize()) {
+                    held.add(pool.getConnection());
+                }
+            } catch (SQLException e) {
+                log.warn("Warm-up could not open all connections of {}", pool.getPoolName(), e);
+            } finally {
+                opened += held.size();
+                for (Connection connection : held) {
+                    try {
+                        connection.close();
+                    } catch (SQLException e) {
+                        log.debug("Could not return a warm-up connection", e);
+                    }
+                }
+            }
+        }
+        return opened;
+    }
+
+    /**
+     * A client of its own, so only the warm-up's requests carry {@link AdmissionFilter#WARM_UP}.
+     */
+    RestTemplate restTemplate() {
+        RestTemplate restTemplate = new RestTemplate();
+        restTemplate.getInterceptors().add((request, body, execution) -> {
+            request.getHeaders().set(AdmissionFilter.WARM_UP, "true");
+            return execution.execute(request, body);
+        });
+        return restTemplate;
+    }
+
+    /**
+     * The read requests to cycle through, built from the sampled books and users.
+     */
+    List<String> readPaths(JsonNode books, JsonNode users) {
+        List<String> paths = new ArrayList<>();
+        paths.add("/books?limit=" + PAGE_SIZE);
+        paths.add("/books?available=true&limit=" + PAGE_SIZE);
+        paths.add("/users?limit=" + PAGE_SIZE);
+        List<String> bookIds = new ArrayList<>();
+        for (JsonNode book : books) {
+            String id = book.path("id").asText();
+            bookIds.add(id);
+            paths.add("/books/" + id);
+            paths.add("/books/" + id + "/availability");
+            paths.add("/books?after=" + id + "&limit=" + PAGE_SIZE);
+            String name = book.path("name").asText("");
+            if (name.length() >= QUERY_LENGTH) {
+                paths.add("/books/search?q=" + encode(name.substring(0, QUERY_LENGTH)) + "&limit=" + PAGE_SIZE);
+            }
+        }
+        for (int i = 0; i < bookIds.size(); i += BATCH_SIZE) {
+            paths.add("/books/batch?ids=" + String.join(",", bookIds.subList(i, Math.min(i + BATCH_SIZE, bookIds.size()))));
+        }
+        for (JsonNode user : users) {
+            String id = user.path("id").asText();
+            paths.add("/users/" + id);
+            paths.add("/users?after=" + id + "&limit=" + PAGE_SIZE);
+        }
+        return paths;
+    }
+
+    private JsonNode sample(RestTemplate restTemplate, String url) {
+        try {
+            return objectMapper.readTree(restTemplate.getForObject(URI.create(url), String.class));
+        } catch (RestClientException | IOException e) {
+            log.warn("Warm-up could not sample {}", url, e);
+            return objectMapper.createArrayNode();
+        }
+    }
+
+    List<String> replayPaths() {
+        if (replayFile.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<String> paths = new ArrayList<>();
+        int skipped = 0;
+        try {
+            for (String line : Files.readAllLines(Paths.get(replayFile), StandardCharsets.UTF_8)) {
+                String request = line.trim();
+                if (request.isEmpty() || request.startsWith("#")) {
+                    continue;
+                }
+                if (request.startsWith("/")) {
+                    paths.add(request);
+                } else if (request.startsWith("GET /")) {
+                    paths.add(request.substring("GET ".length()));
+                } else {
+                    skipped++;
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Warm-up could not read replay file {}", replayFile, e);
+        }
+        if (skipped > 0) {
+            log.info("Warm-up skipped {} requests of {} that are not GET", skipped, replayFile);
+        }
+        return paths;
+    }
+
+    /**
+     * Sends {@code count} requests, cycling through the paths in random order from several threads.
+     */
+    Outcome send(RestTemplate restTemplate, String baseUrl, List<String> paths, int count, long deadline) {
+        Outcome outcome = new Outcome();
+        if (paths.isEmpty() || count <= 0) {
+            return outcome;
+        }
+        AtomicInteger remaining = new AtomicInteger(count);
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency, new CustomizableThreadFactory("warm-up-"));
+        for (int i = 0; i < concurrency; i++) {
+            workers.execute(() -> {
+                while (remaining.getAndDecrement() > 0 && System.nanoTime() - deadline < 0) {
+                    String path = paths.get(ThreadLocalRandom.current().nextInt(paths.size()));
+                    outcome.sent.incrementAndGet();
+                    try {
+                        restTemplate.getForObject(URI.create(baseUrl + path), byte[].class);
+                    } catch (RestClientException | IllegalArgumentException e) {
+                        outcome.failed.incrementAndGet();
+                        log.debug("Warm-up request {} failed", path, e);
+                    }
+                }
+            });
+        }
+        workers.shutdown();
+        try {
+            workers.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdownNow();
+        return outcome;
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    static final class Outcome {
+
+        final AtomicInteger sent = new AtomicInteger();
+
+        final AtomicInteger failed = new AtomicInteger();
+    }
+}
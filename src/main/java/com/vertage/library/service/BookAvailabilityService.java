@@ -0,0 +1,12 @@
+package com.vertage.library.service;
+
+import com.vertage.library.dto.BookAvailability;
+import lombok.NonNull;
+
+import java.util.List;
+
+public interface BookAvailabilityService {
+    BookAvailability getAvailability(@NonNull Long bookId);
+
+    List<BookAvailability> getAvailability(@NonNull List<Long> bookIds);
+}
@@ -0,0 +1,15 @@
+package com.vertage.library.service;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+public interface BookFeedService {
+
+    /**
+     * Opens a stream of book changes committed from now on.
+     *
+     * @param lastEventId id of the last event the client received, to replay what it missed first;
+     *                    {@code null} for new events only
+     * @throws com.vertage.library.exception.ServiceUnavailableException if the subscriber limit is reached
+     */
+    SseEmitter subscribe(String lastEventId);
+}
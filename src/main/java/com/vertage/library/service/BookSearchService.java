@@ -0,0 +1,10 @@
+package com.vertage.library.service;
+
+import com.vertage.library.dto.BookSearchHit;
+import lombok.NonNull;
+
+import java.util.List;
+
+public interface BookSearchService {
+    List<BookSearchHit> search(@NonNull String query, Integer afterScore, Long after, int limit);
+}
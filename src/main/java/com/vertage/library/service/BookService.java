@@ -1,5 +1,8 @@
 package com.vertage.library.service;
 
+import com.vertage.library.dto.BookView;
+import com.vertage.library.dto.LoanRequest;
+import com.vertage.library.dto.LoanResult;
 import com.vertage.library.entity.Book;
 import lombok.NonNull;
 
@@ -10,12 +13,49 @@ public interface BookService {
 
     void takeBook(@NonNull Long bookId,@NonNull Long userId);
 
+    List<LoanResult> returnBooks(@NonNull List<Long> bookIds);
+
+    List<LoanResult> takeBooks(@NonNull List<LoanRequest> requests);
+
+    /**
+     * Returns and takes books in one transaction.
+     *
+     * @return the results of the returns followed by those of the takes
+     */
+    List<LoanResult> returnAndTakeBooks(@NonNull List<Long> bookIds, @NonNull List<LoanRequest> requests);
+
     Book save(@NonNull Book book);
 
+    /**
+     * Replaces the book with the given id, checking its revision first when the caller names one.
+     *
+     * @param expectedRevision {@link BookView#getRevision() revision} the caller last read,
+     *                         {@code null} to overwrite whatever is stored
+     * @throws com.vertage.library.exception.PreconditionFailedException if the stored revision differs
+     */
+    Book update(@NonNull Long bookId, @NonNull Book book, String expectedRevision);
+
     void deleteById(@NonNull Long bookId);
 
+    /**
+     * @return the number of books deleted
+     */
+    int deleteByIds(@NonNull List<Long> bookIds);
+
     Book getById(@NonNull Long bookId);
 
-    List<Book> getAll();
+    BookView getViewById(@NonNull Long bookId);
+
+    List<BookView> getViewsByIds(@NonNull List<Long> bookIds);
+
+    List<BookView> getAll(Long after, int limit);
+
+    /**
+     * Taken books ({@code available} false without {@code userId}) are ordered by holder, then id,
+     * and resumed after {@code afterUserId} and {@code after}; every other listing is ordered by id.
+     */
+    List<BookView> getAll(Boolean available, Long userId, Long afterUserId, Long after, int limit);
+
+    List<BookView> getAllByName(String afterName, Long after, int limit);
 
 }
@@ -0,0 +1,11 @@
+package com.vertage.library.service;
+
+import com.vertage.library.dto.DataFormat;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface CatalogExportService {
+    void exportBooks(@NonNull OutputStream out, @NonNull DataFormat format) throws IOException;
+}
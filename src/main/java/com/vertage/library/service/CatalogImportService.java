@@ -0,0 +1,13 @@
+package com.vertage.library.service;
+
+import com.vertage.library.dto.DataFormat;
+import com.vertage.library.dto.ImportReport;
+import lombok.NonNull;
+
+import java.io.InputStream;
+
+public interface CatalogImportService {
+    ImportReport importBooks(@NonNull InputStream in, @NonNull DataFormat format);
+
+    ImportReport importUsers(@NonNull InputStream in, @NonNull DataFormat format);
+}
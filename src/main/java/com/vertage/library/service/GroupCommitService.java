@@ -0,0 +1,16 @@
+package com.vertage.library.service;
+
+import lombok.NonNull;
+
+/**
+ * Takes and returns books like {@link BookService}, but commits concurrent calls together in micro-batches.
+ * Each call still fails with the exception the single-call path would throw.
+ */
+public interface GroupCommitService {
+
+    boolean isEnabled();
+
+    void takeBook(@NonNull Long bookId, @NonNull Long userId);
+
+    void returnBook(@NonNull Long bookId);
+}
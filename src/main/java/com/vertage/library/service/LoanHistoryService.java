@@ -0,0 +1,12 @@
+package com.vertage.library.service;
+
+import com.vertage.library.entity.LoanEvent;
+import lombok.NonNull;
+
+import java.util.List;
+
+public interface LoanHistoryService {
+    List<LoanEvent> getByBook(@NonNull Long bookId, Long after, int limit);
+
+    List<LoanEvent> getByUser(@NonNull Long userId, Long after, int limit);
+}
@@ -1,17 +1,46 @@
 package com.vertage.library.service;
 
+import com.vertage.library.dto.UserView;
 import com.vertage.library.entity.User;
 import lombok.NonNull;
 
 import java.util.List;
 
 public interface UserService {
-    List<User> getAll();
+    List<UserView> getAll(Long after, int limit);
 
     User getById(@NonNull Long userId);
 
+    UserView getViewById(@NonNull Long userId);
+
     User save(@NonNull User user);
 
+    /**
+     * Replaces the user with the given id, checking its revision first when the caller names one.
+     *
+     * @param expectedRevision {@link UserView#getRevision() revision} the caller last read,
+     *                         {@code null} to overwrite whatever is stored
+     * @throws com.vertage.library.exception.PreconditionFailedException if the stored revision differs
+     */
+    User update(@NonNull Long userId, @NonNull User user, String expectedRevision);
+
     void deleteById(@NonNull Long userId);
 
+    /**
+     * Returns every book the user holds and deletes the user in one transaction, with one statement each
+     * and without loading the user or the books.
+     *
+     * @throws com.vertage.library.exception.UserNotFoundException if there is no such user
+     */
+    void releaseBooksAndDeleteById(@NonNull Long userId);
+
+    /**
+     * Deletes the users with one statement; unknown ids are skipped.
+     *
+     * @param releaseBooks whether to return the users' books first; if not, deleting a user who still
+     *                     holds a book fails with {@link com.vertage.library.exception.UserHoldsBooksException}
+     * @return the number of users deleted
+     */
+    int deleteByIds(@NonNull List<Long> userIds, boolean releaseBooks);
+
 }
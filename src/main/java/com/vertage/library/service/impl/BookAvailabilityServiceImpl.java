@@ -0,0 +1,152 @@
+package com.vertage.library.service.impl;
+
+import com.vertage.library.dto.BookAvailability;
+import com.vertage.library.event.BookChangedEvent;
+import com.vertage.library.exception.BookNotFoundException;
+import com.vertage.library.exception.InvalidRequestDataException;
+import com.vertage.library.repository.BookRepository;
+import com.vertage.library.service.BookAvailabilityService;
+import com.vertage.library.util.LongLongHashMap;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Answers availability from an in-memory {@code bookId -> holderId} index instead of the database.
+ * The index is loaded once the context has started and then follows committed {@link BookChangedEvent}s.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BookAvailabilityServiceImpl implements BookAvailabilityService {
+
+    static final int MAX_IDS = 1000;
+
+    private static final long FREE = 0L;
+    private static final long UNKNOWN = -1L;
+    private static final int INITIAL_SIZE = 1 << 16;
+
+    @NonNull
+    private final BookRepository bookRepository;
+
+    private final LongLongHashMap holders = new LongLongHashMap(INITIAL_SIZE, UNKNOWN);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Ids of books changed, deletes included, since the context started and until the index is loaded;
+     * {@code null} once loaded. Guarded by the write lock.
+     */
+    private LongLongHashMap changedWhileLoading = new LongLongHashMap(INITIAL_SIZE, 0L);
+
+    /**
+     * Requests are served while the index loads, so changes committed during the scan are applied at once
+     * and their ids recorded. Loaded rows of those ids are skipped, as they may be older than the change;
+     * a book deleted during the scan therefore does not come back.
+     */
+    @EventListener(ApplicationStartedEvent.class)
+    public void load() {
+        long started = System.nanoTime();
+        Lock writeLock = lock.writeLock();
+        bookRepository.forEachHolder((bookId, userId) -> {
+            writeLock.lock();
+            try {
+                if (!changedWhileLoading.containsKey(bookId)) {
+                    holders.put(bookId, userId);
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        });
+        writeLock.lock();
+        try {
+            changedWhileLoading = null;
+        } finally {
+            writeLock.unlock();
+        }
+        log.info("Loaded availability of {} books in {} ms",
+                size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    @TransactionalEventListener
+    public void onBookChanged(BookChangedEvent event) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            if (changedWhileLoading != null) {
+                changedWhileLoading.put(event.getBookId(), 1L);
+            }
+            if (event.getType() == BookChangedEvent.Type.DELETED) {
+                holders.remove(event.getBookId());
+            } else {
+                holders.put(event.getBookId(), event.getUserId() == null ? FREE : event.getUserId());
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public BookAvailability getAvailability(@NonNull Long bookId) {
+        long holder = holder(bookId);
+        if (holder == UNKNOWN) {
+            throw new BookNotFoundException();
+        }
+        return availability(bookId, holder);
+    }
+
+    @Override
+    public List<BookAvailability> getAvailability(@NonNull List<Long> bookIds) {
+        if (bookIds.size() > MAX_IDS) {
+            throw new InvalidRequestDataException("At most " + MAX_IDS + " ids can be requested at once");
+        }
+        List<BookAvailability> result = new ArrayList<>(bookIds.size());
+        for (Long bookId : bookIds) {
+            long holder = bookId == null ? UNKNOWN : holder(bookId);
+            if (holder != UNKNOWN) {
+                result.add(availability(bookId, holder));
+            }
+        }
+        return result;
+    }
+
+    int size() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return holders.size();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private long holder(long bookId) {
+        if (bookId <= 0) {
+            return UNKNOWN;
+        }
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return holders.get(bookId);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private static BookAvailability availability(long bookId, long holder) {
+        return holder == FREE
+                ? new BookAvailability(bookId, true, null)
+                : new BookAvailability(bookId, false, holder);
+    }
+}
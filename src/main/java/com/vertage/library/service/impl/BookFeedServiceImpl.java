@@ -0,0 +1,328 @@
+package com.vertage.library.service.impl;
+
+import com.vertage.library.dto.BookFeedEvent;
+import com.vertage.library.event.BookChangedEvent;
+import com.vertage.library.exception.ServiceUnavailableException;
+import com.vertage.library.service.BookFeedService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes committed book changes to SSE subscribers, so clients can follow availability instead of polling.
+ * <p>
+ * Every change gets the next sequence number and the latest {@code history} changes are kept in a ring.
+ * Event ids are {@code <epoch>-<sequence>}, where the epoch tells this process apart from earlier ones.
+ * A client reconnecting with the id it saw last gets the changes it missed replayed from the ring; when they
+ * are gone, or the id is not from this process, it gets a {@code reset} event and should reload the list.
+ * <p>
+ * A committing thread only queues its change; one sender thread at a time numbers the queued changes and fans
+ * them out, so takes and returns neither wait on each other nor pay for the subscribers.
+ * Each subscriber has a bounded buffer drained by a small pool of sender threads. A subscriber whose buffer
+ * fills up is evicted: its stream ends and it may reconnect and resume. The feed only carries changes
+ * committed through this instance.
+ */
+@Slf4j
+@Service
+public class BookFeedServiceImpl implements BookFeedService {
+
+    static final String SUBSCRIBERS = "library.feed.subscribers";
+    static final String EVICTED = "library.feed.evicted";
+    static final String RESET = "reset";
+
+    /**
+     * Sends per turn of one subscriber on a sender thread, so a busy subscriber does not starve the others.
+     */
+    private static final int SENDS_PER_RUN = 64;
+
+    /**
+     * How long stopping waits for the sender threads to complete the streams.
+     */
+    private static final long STOP_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    @Value("${library.feed.history:1024}")
+    private int history;
+
+    @Value("${library.feed.buffer-size:256}")
+    private int bufferSize;
+
+    @Value("${library.feed.max-subscribers:1000}")
+    private int maxSubscribers;
+
+    @Value("${library.feed.senders:2}")
+    private int senders;
+
+    @Value("${library.feed.heartbeat:15s}")
+    private Duration heartbeat;
+
+    @Value("${library.feed.timeout:30m}")
+    private Duration timeout;
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
+    private final Set<Subscriber> subscribers;
+
+    private final Counter evicted;
+
+    /**
+     * Committed changes not yet numbered, filled by the committing threads.
+     */
+    private final Queue<BookChangedEvent> changes = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean dispatching = new AtomicBoolean();
+
+    /**
+     * The latest changes by sequence modulo the history size; guarded by {@code this} with the sequence.
+     */
+    private BookFeedEvent[] ring;
+
+    private long sequence;
+
+    private ScheduledExecutorService executor;
+
+    public BookFeedServiceImpl(@NonNull MeterRegistry meterRegistry) {
+        subscribers = meterRegistry.gauge(SUBSCRIBERS, ConcurrentHashMap.<Subscriber>newKeySet(), Set::size);
+        evicted = meterRegistry.counter(EVICTED);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (history < 1 || bufferSize < 1) {
+            throw new IllegalStateException("library.feed.history and buffer-size must be positive");
+        }
+        ring = new BookFeedEvent[history];
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("book-feed-");
+        threadFactory.setDaemon(true);
+        executor = Executors.newScheduledThreadPool(senders, threadFactory);
+        executor.scheduleWithFixedDelay(this::heartbeat, heartbeat.toMillis(), heartbeat.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Closes every subscriber and lets the sender threads complete their streams.
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void stop() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.close();
+            subscriber.schedule();
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(STOP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor.shutdownNow();
+    }
+
+    @TransactionalEventListener
+    public void onBookChanged(BookChangedEvent event) {
+        changes.offer(event);
+        scheduleDispatch();
+    }
+
+    private void scheduleDispatch() {
+        if (dispatching.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::dispatch);
+            } catch (RejectedExecutionException e) {
+                changes.clear();
+            }
+        }
+    }
+
+    /**
+     * Runs on a sender thread, one at a time: numbers the queued changes in queue order and offers them
+     * to every subscriber.
+     */
+    private void dispatch() {
+        BookChangedEvent event;
+        while ((event = changes.poll()) != null) {
+            synchronized (this) {
+                BookFeedEvent change = new BookFeedEvent(++sequence, event.getType(), event.getBookId(),
+                        event.getUserId(), event.getName());
+                ring[(int) (change.getSequence() % history)] = change;
+                for (Subscriber subscriber : subscribers) {
+                    subscriber.offer(event(change));
+                }
+            }
+        }
+        dispatching.set(false);
+        if (!changes.isEmpty()) {
+            scheduleDispatch();
+        }
+    }
+
+    @Override
+    public SseEmitter subscribe(String lastEventId) {
+        if (subscribers.size() >= maxSubscribers) {
+            throw new ServiceUnavailableException("Too many subscribers, please retry later");
+        }
+        Subscriber subscriber = new Subscriber(new SseEmitter(timeout.toMillis()));
+        synchronized (this) {
+            if (lastEventId != null) {
+                replay(subscriber, lastEventId);
+            }
+            subscribers.add(subscriber);
+        }
+        return subscriber.emitter;
+    }
+
+    /**
+     * Queues the changes after {@code lastEventId}, or a reset when they cannot all be replayed.
+     */
+    private void replay(Subscriber subscriber, String lastEventId) {
+        long after = sequenceOf(lastEventId);
+        long oldest = Math.max(1, sequence - history + 1);
+        if (after < oldest - 1 || after > sequence || sequence - after > bufferSize) {
+            subscriber.offer(SseEmitter.event().id(id(sequence)).name(RESET).data(id(sequence)));
+            return;
+        }
+        for (long next = after + 1; next <= sequence; next++) {
+            subscriber.offer(event(ring[(int) (next % history)]));
+        }
+    }
+
+    /**
+     * @return the sequence of an id issued by this process, {@code -1} for any other id
+     */
+    private long sequenceOf(String eventId) {
+        int dash = eventId.indexOf('-');
+        if (dash < 0 || !epoch.equals(eventId.substring(0, dash))) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(eventId.substring(dash + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private String id(long sequence) {
+        return epoch + "-" + sequence;
+    }
+
+    /**
+     * A builder is built once per send, so every subscriber gets its own.
+     */
+    private SseEmitter.SseEventBuilder event(BookFeedEvent change) {
+        return SseEmitter.event()
+                .id(id(change.getSequence()))
+                .name(change.getType().name().toLowerCase(Locale.ROOT))
+                .data(change, MediaType.APPLICATION_JSON);
+    }
+
+    /**
+     * Keeps idle streams from being cut by proxies and finds clients that went away without closing.
+     */
+    private void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.isIdle()) {
+                subscriber.offer(SseEmitter.event().comment("heartbeat"));
+            }
+        }
+    }
+
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+
+        private final Queue<SseEmitter.SseEventBuilder> buffer = new ConcurrentLinkedQueue<>();
+
+        private final AtomicInteger buffered = new AtomicInteger();
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private volatile boolean closed;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+            emitter.onCompletion(this::close);
+            emitter.onTimeout(this::close);
+            emitter.onError(e -> close());
+        }
+
+        void offer(SseEmitter.SseEventBuilder event) {
+            if (closed) {
+                return;
+            }
+            if (buffered.incrementAndGet() > bufferSize) {
+                evicted.increment();
+                log.debug("Evicted a book feed subscriber that fell {} events behind", bufferSize);
+                close();
+            } else {
+                buffer.offer(event);
+            }
+            schedule();
+        }
+
+        boolean isIdle() {
+            return buffered.get() == 0;
+        }
+
+        void close() {
+            closed = true;
+            subscribers.remove(this);
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    close();
+                }
+            }
+        }
+
+        /**
+         * Runs on a sender thread. The emitter is only ever completed here, not by the dispatching or the stopping
+         * thread, as completing it waits for a send in progress.
+         */
+        private void drain() {
+            try {
+                SseEmitter.SseEventBuilder event;
+                for (int i = 0; i < SENDS_PER_RUN && !closed && (event = buffer.poll()) != null; i++) {
+                    buffered.decrementAndGet();
+                    emitter.send(event);
+                }
+            } catch (IOException | IllegalStateException e) {
+                close();
+            }
+            if (closed) {
+                buffer.clear();
+                emitter.complete();
+                return;
+            }
+            scheduled.set(false);
+            if (!buffer.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+}
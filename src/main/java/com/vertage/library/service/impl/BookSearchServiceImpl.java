@@ -0,0 +1,124 @@
+package com.vertage.library.service.impl;
+
+import com.vertage.library.dto.BookSearchHit;
+import com.vertage.library.event.BookChangedEvent;
+import com.vertage.library.exception.InvalidRequestDataException;
+import com.vertage.library.repository.BookRepository;
+import com.vertage.library.service.BookSearchService;
+import com.vertage.library.util.LongLongHashMap;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Searches book names in an in-memory {@link TitleIndex} instead of the database.
+ * The index is built once the context has started and then follows committed {@link BookChangedEvent}s.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BookSearchServiceImpl implements BookSearchService {
+
+    private static final int INITIAL_SIZE = 1 << 16;
+
+    @NonNull
+    private final BookRepository bookRepository;
+
+    private final TitleIndex index = new TitleIndex(INITIAL_SIZE);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Ids of books saved or deleted since the context started and until the index is built;
+     * {@code null} once built. Guarded by the write lock.
+     */
+    private LongLongHashMap changedWhileLoading = new LongLongHashMap(INITIAL_SIZE, 0L);
+
+    /**
+     * Requests are served while the index is built, so saves and deletes committed during the scan are
+     * applied at once and their ids recorded. Loaded rows of those ids are skipped, as they may be older
+     * than the change; a book deleted during the scan therefore does not come back.
+     */
+    @EventListener(ApplicationStartedEvent.class)
+    public void load() {
+        long started = System.nanoTime();
+        Lock writeLock = lock.writeLock();
+        bookRepository.forEachName((name, bookId) -> {
+            writeLock.lock();
+            try {
+                if (!changedWhileLoading.containsKey(bookId)) {
+                    index.put(bookId, name);
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        });
+        writeLock.lock();
+        try {
+            changedWhileLoading = null;
+        } finally {
+            writeLock.unlock();
+        }
+        log.info("Indexed names of {} books in {} ms",
+                size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    @TransactionalEventListener
+    public void onBookChanged(BookChangedEvent event) {
+        if (event.getType() != BookChangedEvent.Type.SAVED && event.getType() != BookChangedEvent.Type.DELETED) {
+            return;
+        }
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            if (changedWhileLoading != null) {
+                changedWhileLoading.put(event.getBookId(), 1L);
+            }
+            if (event.getType() == BookChangedEvent.Type.DELETED) {
+                index.remove(event.getBookId());
+            } else {
+                index.put(event.getBookId(), event.getName());
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public List<BookSearchHit> search(@NonNull String query, Integer afterScore, Long after, int limit) {
+        PageRequests.checkLimit(limit);
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(TitleIndex.terms(query)));
+        if (terms.size() > TitleIndex.MAX_QUERY_TERMS) {
+            throw new InvalidRequestDataException("The query can have at most " + TitleIndex.MAX_QUERY_TERMS + " words");
+        }
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return index.search(terms, afterScore, PageRequests.cursor(after), limit);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    int size() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return index.size();
+        } finally {
+            readLock.unlock();
+        }
+    }
+}
@@ -1,61 +1,423 @@
 package com.vertage.library.service.impl;
 
+import com.vertage.library.config.CacheConfig;
+import com.vertage.library.config.MetricsConfig;
+import com.vertage.library.dto.BookView;
+import com.vertage.library.dto.LoanRequest;
+import com.vertage.library.dto.LoanResult;
+import com.vertage.library.dto.LoanStatus;
 import com.vertage.library.entity.Book;
-import com.vertage.library.entity.User;
+import com.vertage.library.event.BookChangedEvent;
 import com.vertage.library.exception.BookNotFoundException;
 import com.vertage.library.exception.InvalidRequestDataException;
+import com.vertage.library.exception.PreconditionFailedException;
 import com.vertage.library.repository.BookRepository;
 import com.vertage.library.service.BookService;
 import com.vertage.library.service.UserService;
+import com.vertage.library.util.SingleFlight;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
-@RequiredArgsConstructor
 public class BookServiceImpl implements BookService {
-    @NonNull
+    static final int MAX_BATCH_SIZE = 1000;
+    static final String TAKE_CONFLICTS = "library.book.take.conflicts";
+
     private final BookRepository bookRepository;
-    @NonNull
     private final UserService userService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SingleFlight<Long, BookView> viewLoads;
+    private final Counter takeConflicts;
+    private final ObjectProvider<CacheManager> cacheManager;
+
+    public BookServiceImpl(@NonNull BookRepository bookRepository, @NonNull UserService userService,
+                           @NonNull ApplicationEventPublisher eventPublisher, @NonNull MeterRegistry meterRegistry,
+                           @NonNull ObjectProvider<CacheManager> cacheManager) {
+        this.bookRepository = bookRepository;
+        this.userService = userService;
+        this.eventPublisher = eventPublisher;
+        this.cacheManager = cacheManager;
+        this.viewLoads = new SingleFlight<>(CacheConfig.BOOKS, meterRegistry);
+        this.takeConflicts = meterRegistry.counter(TAKE_CONFLICTS);
+    }
 
     @Override
+    @Timed(MetricsConfig.SERVICE_TIMER)
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.BOOKS, key = "#bookId"),
+            @CacheEvict(cacheNames = CacheConfig.USERS, allEntries = true)})
     public void returnBook(@NonNull Long bookId) {
-        Book book = getById(bookId);
-        book.setUser(null);
+        Map<Long, Long> holders = bookRepository.lockHolders(Collections.singletonList(bookId));
+        if (bookRepository.returnBook(bookId) == 0) {
+            throw new BookNotFoundException();
+        }
+        publishReturned(bookId, holders.get(bookId));
     }
 
     @Override
+    @Timed(MetricsConfig.SERVICE_TIMER)
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.BOOKS, key = "#bookId"),
+            @CacheEvict(cacheNames = CacheConfig.USERS, key = "#userId")})
     public void takeBook(@NonNull Long bookId, @NonNull Long userId) {
+        if (bookRepository.takeBook(bookId, userId) == 0) {
+            throw takeFailure(bookId, userId);
+        }
+        publish(BookChangedEvent.Type.TAKEN, bookId, userId);
+    }
+
+    /**
+     * Works out why the conditional update did not match; only runs on the failure path,
+     * so a successful take stays a single statement.
+     */
+    private RuntimeException takeFailure(Long bookId, Long userId) {
         Book book = getById(bookId);
-        if (book.getUser() != null) {
-            throw new InvalidRequestDataException("The book already taken. Please, input correct id");
+        if (book.getUser() == null) {
+            userService.getViewById(userId);
+        }
+        takeConflicts.increment();
+        return new InvalidRequestDataException("The book already taken. Please, input correct id");
+    }
+
+    @Override
+    @Timed(MetricsConfig.SERVICE_TIMER)
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.BOOKS, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.USERS, allEntries = true)})
+    public List<LoanResult> returnBooks(@NonNull List<Long> bookIds) {
+        return returnBooks(bookIds, new HashSet<>());
+    }
+
+    /**
+     * The books are locked before they are returned, so each return is published with the holder it cleared.
+     *
+     * @param holderIds collects those holders
+     */
+    private List<LoanResult> returnBooks(List<Long> bookIds, Set<Long> holderIds) {
+        checkBatchSize(bookIds);
+        if (bookIds.contains(null)) {
+            throw new InvalidRequestDataException("Book id is required for every item");
+        }
+        Map<Long, Long> holders = bookRepository.lockHolders(bookIds);
+        int[] updated = bookRepository.returnBooks(bookIds);
+        List<LoanResult> results = new ArrayList<>(bookIds.size());
+        for (int i = 0; i < bookIds.size(); i++) {
+            if (updated[i] != 0) {
+                Long holderId = holders.get(bookIds.get(i));
+                if (holderId != null) {
+                    holderIds.add(holderId);
+                }
+                publishReturned(bookIds.get(i), holderId);
+                results.add(new LoanResult(bookIds.get(i), null, LoanStatus.OK));
+            } else {
+                results.add(new LoanResult(bookIds.get(i), null, LoanStatus.BOOK_NOT_FOUND));
+            }
+        }
+        return results;
+    }
+
+    @Override
+    @Timed(MetricsConfig.SERVICE_TIMER)
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.BOOKS, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.USERS, allEntries = true)})
+    public List<LoanResult> takeBooks(@NonNull List<LoanRequest> requests) {
+        checkBatchSize(requests);
+        for (LoanRequest request : requests) {
+            if (request == null || request.getBookId() == null || request.getUserId() == null) {
+                throw new InvalidRequestDataException("Book id and user id are required for every item");
+            }
+        }
+        int[] updated = bookRepository.takeBooks(requests);
+        Map<Long, Book> failedBooks = failedBooks(requests, updated);
+        List<LoanResult> results = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            LoanRequest request = requests.get(i);
+            if (updated[i] != 0) {
+                publish(BookChangedEvent.Type.TAKEN, request.getBookId(), request.getUserId());
+                results.add(new LoanResult(request.getBookId(), request.getUserId(), LoanStatus.OK));
+            } else {
+                results.add(new LoanResult(request.getBookId(), request.getUserId(),
+                        takeFailure(failedBooks.get(request.getBookId()))));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Both batches run in one transaction, returns first so books freed here can be taken in the same go.
+     * Once it has committed, only the books that changed and their previous and new holders are evicted,
+     * so the rest of the caches survive the steady stream of micro-batches.
+     */
+    @Override
+    @Timed(MetricsConfig.SERVICE_TIMER)
+    public List<LoanResult> returnAndTakeBooks(@NonNull List<Long> bookIds, @NonNull List<LoanRequest> requests) {
+        List<LoanResult> results = new ArrayList<>(bookIds.size() + requests.size());
+        Set<Long> userIds = new HashSet<>();
+        if (!bookIds.isEmpty()) {
+            results.addAll(returnBooks(bookIds, userIds));
+        }
+        if (!requests.isEmpty()) {
+            results.addAll(takeBooks(requests));
+        }
+        Set<Long> changedBookIds = new HashSet<>();
+        for (LoanResult result : results) {
+            if (result.getStatus() == LoanStatus.OK) {
+                changedBookIds.add(result.getBookId());
+                if (result.getUserId() != null) {
+                    userIds.add(result.getUserId());
+                }
+            }
+        }
+        evictAfterCommit(changedBookIds, userIds);
+        return results;
+    }
+
+    private void evictAfterCommit(Set<Long> bookIds, Set<Long> userIds) {
+        CacheManager caches = cacheManager.getIfAvailable();
+        if (caches == null) {
+            return;
+        }
+        Runnable evict = () -> {
+            evict(caches.getCache(CacheConfig.BOOKS), bookIds);
+            evict(caches.getCache(CacheConfig.USERS), userIds);
+        };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evict.run();
+            }
+        });
+    }
+
+    private static void evict(Cache cache, Set<Long> keys) {
+        if (cache != null) {
+            keys.forEach(cache::evict);
+        }
+    }
+
+    /**
+     * Loads every book whose take did not match in one query; the batch already ran in this
+     * transaction, so a book taken earlier in the same batch is seen as taken.
+     */
+    private Map<Long, Book> failedBooks(List<LoanRequest> requests, int[] updated) {
+        Set<Long> failedIds = new HashSet<>();
+        for (int i = 0; i < requests.size(); i++) {
+            if (updated[i] == 0) {
+                failedIds.add(requests.get(i).getBookId());
+            }
+        }
+        if (failedIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return bookRepository.findAllById(failedIds).stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+    }
+
+    private LoanStatus takeFailure(Book book) {
+        if (book == null) {
+            return LoanStatus.BOOK_NOT_FOUND;
+        }
+        if (book.getUser() == null) {
+            return LoanStatus.USER_NOT_FOUND;
+        }
+        takeConflicts.increment();
+        return LoanStatus.ALREADY_TAKEN;
+    }
+
+    private void publish(BookChangedEvent.Type type, Long bookId, Long userId) {
+        eventPublisher.publishEvent(new BookChangedEvent(type, bookId, userId, null));
+    }
+
+    private void publishReturned(Long bookId, Long previousUserId) {
+        eventPublisher.publishEvent(new BookChangedEvent(BookChangedEvent.Type.RETURNED, bookId, null, null,
+                previousUserId));
+    }
+
+    static void checkBatchSize(List<?> items) {
+        if (items.isEmpty() || items.size() > MAX_BATCH_SIZE) {
+            throw new InvalidRequestDataException("The batch must contain between 1 and " + MAX_BATCH_SIZE + " items");
         }
-        User user = userService.getById(userId);
-        book.setUser(user);
     }
 
     @Override
+    @Timed(MetricsConfig.SERVICE_TIMER)
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.BOOKS, key = "#book.id", condition = "#book.id != null"),
+            @CacheEvict(cacheNames = CacheConfig.USERS, allEntries = true)})
     public Book save(@NonNull Book book) {
-        return bookRepository.save(book);
+        return published(bookRepository.save(book));
     }
 
+    /**
+     * A missing book is created as before unless the caller expected a revision of it. The stored version
+     * is copied onto the detached book, so a concurrent write between the check and the flush still
+     * fails the versioned UPDATE instead of being overwritten.
+     */
     @Override
+    @Timed(MetricsConfig.SERVICE_TIMER)
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.BOOKS, key = "#bookId"),
+            @CacheEvict(cacheNames = CacheConfig.USERS, allEntries = true)})
+    public Book update(@NonNull Long bookId, @NonNull Book book, String expectedRevision) {
+        BookView current = bookRepository.findViewById(bookId).orElse(null);
+        if (expectedRevision != null && (current == null || !expectedRevision.equals(current.getRevision()))) {
+            throw new PreconditionFailedException();
+        }
+        book.setId(bookId);
+        if (current != null) {
+            book.setVersion(current.getVersion());
+        }
+        return published(bookRepository.saveAndFlush(book));
+    }
+
+    private Book published(Book saved) {
+        eventPublisher.publishEvent(new BookChangedEvent(BookChangedEvent.Type.SAVED, saved.getId(),
+                saved.getUser() == null ? null : saved.getUser().getId(), saved.getName()));
+        return saved;
+    }
+
+    @Override
+    @Timed(MetricsConfig.SERVICE_TIMER)
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.BOOKS, key = "#bookId"),
+            @CacheEvict(cacheNames = CacheConfig.USERS, allEntries = true)})
     public void deleteById(@NonNull Long bookId) {
         bookRepository.deleteById(bookId);
+        publish(BookChangedEvent.Type.DELETED, bookId, null);
+    }
+
+    /**
+     * Deletes with one statement and without loading the books; unknown ids are skipped.
+     */
+    @Override
+    @Timed(MetricsConfig.SERVICE_TIMER)
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.BOOKS, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.USERS, allEntries = true)})
+    public int deleteByIds(@NonNull List<Long> bookIds) {
+        checkBatchSize(bookIds);
+        Set<Long> ids = new LinkedHashSet<>(bookIds);
+        ids.remove(null);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        List<Long> existing = bookRepository.lockIdsByIdIn(ids);
+        if (existing.isEmpty()) {
+            return 0;
+        }
+        int deleted = bookRepository.deleteByIdIn(existing);
+        existing.forEach(bookId -> publish(BookChangedEvent.Type.DELETED, bookId, null));
+        return deleted;
     }
 
     @Override
+    @Timed(MetricsConfig.SERVICE_TIMER)
+    @Transactional(readOnly = true)
     public Book getById(@NonNull Long bookId) {
         return bookRepository.findById(bookId).orElseThrow(BookNotFoundException::new);
     }
 
+    /**
+     * Runs on cache misses only. Concurrent misses of one book share a single query; the method opens no
+     * transaction of its own, so callers waiting for another caller's query do not hold a connection.
+     * A caller already inside a transaction queries on its own, as it may see rows the others cannot.
+     * <p>
+     * Not read-only, so the view is loaded from the primary: a lagging replica would put a view, and its
+     * entity tag, from before the last take or return back into the cache.
+     */
+    @Override
+    @Timed(MetricsConfig.SERVICE_TIMER)
+    @Cacheable(cacheNames = CacheConfig.BOOKS, key = "#bookId")
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public BookView getViewById(@NonNull Long bookId) {
+        Supplier<BookView> load = () -> bookRepository.findViewById(bookId).orElseThrow(BookNotFoundException::new);
+        return TransactionSynchronizationManager.isActualTransactionActive() ? load.get() : viewLoads.get(bookId, load);
+    }
+
+    /**
+     * Unknown ids are left out; the views come back in the order the ids were first given.
+     */
+    @Override
+    @Timed(MetricsConfig.SERVICE_TIMER)
+    @Transactional(readOnly = true)
+    public List<BookView> getViewsByIds(@NonNull List<Long> bookIds) {
+        checkBatchSize(bookIds);
+        Set<Long> ids = new LinkedHashSet<>(bookIds);
+        ids.remove(null);
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, BookView> found = bookRepository.findViewsByIdIn(ids).stream()
+                .collect(Collectors.toMap(BookView::getId, Function.identity()));
+        return ids.stream().map(found::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    @Override
+    @Timed(MetricsConfig.SERVICE_TIMER)
+    @Transactional(readOnly = true)
+    public List<BookView> getAll(Long after, int limit) {
+        return bookRepository.findViewsAfter(PageRequests.cursor(after), PageRequests.limit(limit));
+    }
+
+    @Override
+    @Timed(MetricsConfig.SERVICE_TIMER)
+    @Transactional(readOnly = true)
+    public List<BookView> getAll(Boolean available, Long userId, Long afterUserId, Long after, int limit) {
+        if (afterUserId != null && (userId != null || !Boolean.FALSE.equals(available))) {
+            throw new InvalidRequestDataException("afterUserId only continues a listing of taken books");
+        }
+        if (userId != null) {
+            if (Boolean.TRUE.equals(available)) {
+                throw new InvalidRequestDataException("A book held by a user cannot be available");
+            }
+            return bookRepository.findViewsByHolderAfter(userId, PageRequests.cursor(after), PageRequests.limit(limit));
+        }
+        if (available == null) {
+            return getAll(after, limit);
+        }
+        return available
+                ? bookRepository.findAvailableViewsAfter(PageRequests.cursor(after), PageRequests.limit(limit))
+                : bookRepository.findTakenViewsAfter(PageRequests.cursor(afterUserId), PageRequests.cursor(after),
+                PageRequests.limit(limit));
+    }
+
     @Override
-    public List<Book> getAll() {
-        return bookRepository.findAll();
+    @Timed(MetricsConfig.SERVICE_TIMER)
+    @Transactional(readOnly = true)
+    public List<BookView> getAllByName(String afterName, Long after, int limit) {
+        return bookRepository.findViewsOrderByName(afterName == null ? "" : afterName,
+                PageRequests.cursor(after), PageRequests.limit(limit));
     }
 }
@@ -0,0 +1,120 @@
+package com.vertage.library.service.impl;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vertage.library.dto.DataFormat;
+import com.vertage.library.service.CatalogExportService;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streams the catalog from a forward-only cursor. Rows are selected as scalars rather than entities,
+ * so nothing is ever attached to the persistence context and heap use does not depend on the table size.
+ */
+@Service
+@RequiredArgsConstructor
+public class CatalogExportServiceImpl implements CatalogExportService {
+
+    private static final String EXPORT_QUERY = "select b.id, b.name, u.id, u.name"
+            + " from Book b left join b.user u order by b.id";
+
+    private static final String CSV_HEADER = "id,name,user_id,user_name";
+
+    @NonNull
+    private final ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * {@link Integer#MIN_VALUE} makes MySQL Connector/J stream rows one by one instead of buffering the result.
+     */
+    @Value("${library.jdbc.stream-fetch-size:" + Integer.MIN_VALUE + "}")
+    private int fetchSize;
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportBooks(@NonNull OutputStream out, @NonNull DataFormat format) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        RowWriter rowWriter = format == DataFormat.CSV ? csvWriter(writer) : ndjsonWriter(writer);
+        try (ScrollableResults rows = entityManager.unwrap(Session.class)
+                .createQuery(EXPORT_QUERY, Object[].class)
+                .setReadOnly(true)
+                .setFetchSize(fetchSize)
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+            while (rows.next()) {
+                rowWriter.write((Long) rows.get(0), (String) rows.get(1), (Long) rows.get(2), (String) rows.get(3));
+            }
+        }
+        rowWriter.close();
+    }
+
+    private static RowWriter csvWriter(Writer writer) throws IOException {
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+        return new RowWriter() {
+            @Override
+            public void write(Long id, String name, Long userId, String userName) throws IOException {
+                writer.write(String.valueOf(id));
+                writer.write(',');
+                writer.write(CsvSupport.quote(name));
+                writer.write(',');
+                writer.write(userId == null ? "" : String.valueOf(userId));
+                writer.write(',');
+                writer.write(CsvSupport.quote(userName));
+                writer.write('\n');
+            }
+
+            @Override
+            public void close() throws IOException {
+                writer.flush();
+            }
+        };
+    }
+
+    private RowWriter ndjsonWriter(Writer writer) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(writer);
+        generator.setRootValueSeparator(new SerializedString("\n"));
+        return new RowWriter() {
+            @Override
+            public void write(Long id, String name, Long userId, String userName) throws IOException {
+                generator.writeStartObject();
+                generator.writeNumberField("id", id);
+                generator.writeStringField("name", name);
+                if (userId != null) {
+                    generator.writeNumberField("userId", userId);
+                    generator.writeStringField("userName", userName);
+                }
+                generator.writeEndObject();
+            }
+
+            @Override
+            public void close() throws IOException {
+                generator.writeRaw('\n');
+                generator.flush();
+            }
+        };
+    }
+
+    private interface RowWriter {
+        void write(Long id, String name, Long userId, String userName) throws IOException;
+
+        void close() throws IOException;
+    }
+}
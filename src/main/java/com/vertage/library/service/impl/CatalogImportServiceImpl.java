@@ -0,0 +1,191 @@
+package com.vertage.library.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vertage.library.dto.DataFormat;
+import com.vertage.library.dto.ImportReport;
+import com.vertage.library.entity.Book;
+import com.vertage.library.entity.User;
+import com.vertage.library.event.BookChangedEvent;
+import com.vertage.library.exception.InvalidRequestDataException;
+import com.vertage.library.repository.BookRepository;
+import com.vertage.library.repository.UserRepository;
+import com.vertage.library.service.CatalogImportService;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Reads the input line by line and writes it in fixed-size chunks, each in its own transaction,
+ * so memory is bounded by the chunk size and a bad chunk does not roll back the ones before it.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CatalogImportServiceImpl implements CatalogImportService {
+
+    private static final int MAX_NAME_LENGTH = 50;
+    private static final String NAME_FIELD = "name";
+
+    @NonNull
+    private final BookRepository bookRepository;
+    @NonNull
+    private final UserRepository userRepository;
+    @NonNull
+    private final TransactionTemplate transactionTemplate;
+    @NonNull
+    private final ObjectMapper objectMapper;
+    @NonNull
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${library.import.batch-size:1000}")
+    private int batchSize;
+
+    @Override
+    public ImportReport importBooks(@NonNull InputStream in, @NonNull DataFormat format) {
+        return importRecords(in, format, name -> new Book(null, name, null), bookRepository,
+                books -> books.forEach(book -> eventPublisher.publishEvent(new BookChangedEvent(
+                        BookChangedEvent.Type.SAVED, book.getId(), null, book.getName()))));
+    }
+
+    @Override
+    public ImportReport importUsers(@NonNull InputStream in, @NonNull DataFormat format) {
+        return importRecords(in, format, name -> new User(null, name, new ArrayList<>()), userRepository, users -> {
+        });
+    }
+
+    private <T> ImportReport importRecords(InputStream in, DataFormat format,
+                                           Function<String, T> factory, JpaRepository<T, Long> repository,
+                                           Consumer<List<T>> onSaved) {
+        if (batchSize < 1) {
+            throw new IllegalStateException("library.import.batch-size must be positive");
+        }
+        ImportReport report = new ImportReport();
+        NameReader nameReader = format == DataFormat.CSV ? new CsvNameReader() : this::readJsonName;
+        List<T> chunk = new ArrayList<>(batchSize);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        long lineNumber = 0;
+        long chunkStart = 1;
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                try {
+                    String name = nameReader.read(line);
+                    if (name != null) {
+                        chunk.add(factory.apply(checkName(name)));
+                    }
+                } catch (IOException | IllegalArgumentException e) {
+                    report.setFailed(report.getFailed() + 1);
+                    report.addError("Line " + lineNumber + ": " + describe(e));
+                }
+                if (chunk.size() == batchSize) {
+                    writeChunk(chunk, repository, onSaved, report, chunkStart, lineNumber);
+                    chunk = new ArrayList<>(batchSize);
+                    chunkStart = lineNumber + 1;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (!chunk.isEmpty()) {
+            writeChunk(chunk, repository, onSaved, report, chunkStart, lineNumber);
+        }
+        log.info("Import finished: {} imported, {} failed in {} chunks",
+                report.getImported(), report.getFailed(), report.getChunks());
+        return report;
+    }
+
+    /**
+     * @param onSaved runs inside the chunk transaction, so events it publishes are delivered only if the chunk commits
+     */
+    private <T> void writeChunk(List<T> chunk, JpaRepository<T, Long> repository, Consumer<List<T>> onSaved,
+                                ImportReport report, long firstLine, long lastLine) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> onSaved.accept(repository.saveAll(chunk)));
+            report.setImported(report.getImported() + chunk.size());
+        } catch (DataAccessException | TransactionException e) {
+            report.setFailed(report.getFailed() + chunk.size());
+            report.addError("Lines " + firstLine + "-" + lastLine + ": " + e.getMostSpecificCause().getMessage());
+        }
+        report.setChunks(report.getChunks() + 1);
+        log.info("Import chunk {} (lines {}-{}): {} imported, {} failed so far",
+                report.getChunks(), firstLine, lastLine, report.getImported(), report.getFailed());
+    }
+
+    private String readJsonName(String line) throws IOException {
+        return objectMapper.readTree(line).path(NAME_FIELD).textValue();
+    }
+
+    private static String checkName(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("name is required");
+        }
+        if (name.length() > MAX_NAME_LENGTH) {
+            throw new IllegalArgumentException("name is longer than " + MAX_NAME_LENGTH + " characters");
+        }
+        return name;
+    }
+
+    private static String describe(Exception e) {
+        return e instanceof JsonProcessingException ? ((JsonProcessingException) e).getOriginalMessage() : e.getMessage();
+    }
+
+    private interface NameReader {
+        /**
+         * @return the record name, or {@code null} if the line carries no record
+         */
+        String read(String line) throws IOException;
+    }
+
+    /**
+     * The first line is the header; the name column is located by its title.
+     */
+    private static final class CsvNameReader implements NameReader {
+
+        private int nameColumn = -1;
+
+        @Override
+        public String read(String line) {
+            List<String> fields = CsvSupport.parseLine(line);
+            if (nameColumn < 0) {
+                nameColumn = indexOf(fields);
+                return null;
+            }
+            if (nameColumn >= fields.size()) {
+                throw new IllegalArgumentException(NAME_FIELD + " column is missing");
+            }
+            return fields.get(nameColumn);
+        }
+
+        private static int indexOf(List<String> header) {
+            for (int i = 0; i < header.size(); i++) {
+                if (NAME_FIELD.equalsIgnoreCase(header.get(i).trim())) {
+                    return i;
+                }
+            }
+            throw new InvalidRequestDataException("CSV header must contain a '" + NAME_FIELD + "' column");
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.vertage.library.service.impl;
+
+import com.vertage.library.dto.LoanRequest;
+import com.vertage.library.dto.LoanResult;
+import com.vertage.library.dto.LoanStatus;
+import com.vertage.library.exception.BookNotFoundException;
+import com.vertage.library.exception.InvalidRequestDataException;
+import com.vertage.library.exception.ServiceUnavailableException;
+import com.vertage.library.exception.UserNotFoundException;
+import com.vertage.library.service.BookService;
+import com.vertage.library.service.GroupCommitService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Group commit for takes and returns: callers queue their loan and wait while a single committer thread
+ * applies whatever has queued up, up to a batch, in one transaction through
+ * {@link BookService#returnAndTakeBooks(List, List)}. Commits then scale with the batch size rather than
+ * with the rate the database can flush its log.
+ * <p>
+ * A batch is closed when it is full or the max delay after its first loan has passed. All loans of a batch
+ * were pending at once, so running its returns before its takes is a valid order for them. If the batch
+ * fails as a whole, its loans are retried one by one so a single bad loan only fails its own caller.
+ * Disabled unless {@code library.group-commit.enabled} is set.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class GroupCommitServiceImpl implements GroupCommitService, SmartLifecycle {
+
+    static final String PENDING = "library.loan.group.pending";
+    static final String SIZE = "library.loan.group.size";
+
+    /**
+     * Stops after the web server, so no request is left waiting, and before the loan history writer,
+     * which records what the last batches commit.
+     */
+    private static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 1536;
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    @NonNull
+    private final BookService bookService;
+    @NonNull
+    private final MeterRegistry meterRegistry;
+
+    @Value("${library.group-commit.enabled:false}")
+    private boolean enabled;
+
+    @Value("${library.group-commit.batch-size:200}")
+    private int batchSize;
+
+    @Value("${library.group-commit.max-delay:2ms}")
+    private Duration maxDelay;
+
+    @Value("${library.group-commit.capacity:10000}")
+    private int capacity;
+
+    @Value("${library.group-commit.wait-timeout:5s}")
+    private Duration waitTimeout;
+
+    private BlockingQueue<Loan> queue;
+
+    private DistributionSummary batchSizes;
+
+    private volatile Thread committer;
+
+    private volatile boolean running;
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void takeBook(@NonNull Long bookId, @NonNull Long userId) {
+        LoanStatus status = submit(new Loan(bookId, userId)).getStatus();
+        switch (status) {
+            case OK:
+                return;
+            case BOOK_NOT_FOUND:
+                throw new BookNotFoundException();
+            case USER_NOT_FOUND:
+                throw new UserNotFoundException();
+            default:
+                throw new InvalidRequestDataException("The book already taken. Please, input correct id");
+        }
+    }
+
+    @Override
+    public void returnBook(@NonNull Long bookId) {
+        if (submit(new Loan(bookId, null)).getStatus() != LoanStatus.OK) {
+            throw new BookNotFoundException();
+        }
+    }
+
+    /**
+     * A caller giving up after the wait timeout does not withdraw its loan; it may still commit.
+     */
+    private LoanResult submit(Loan loan) {
+        if (!running) {
+            throw new ServiceUnavailableException("Group commit is not running");
+        }
+        if (!queue.offer(loan)) {
+            throw new ServiceUnavailableException("Too many pending loans, please retry later");
+        }
+        try {
+            return loan.result.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new ServiceUnavailableException("The loan was not committed in time, its outcome is unknown");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted while waiting for the loan to commit");
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        if (batchSize < 1 || batchSize > BookServiceImpl.MAX_BATCH_SIZE || capacity < 1) {
+            throw new IllegalStateException("library.group-commit.batch-size must be between 1 and "
+                    + BookServiceImpl.MAX_BATCH_SIZE + " and capacity positive");
+        }
+        queue = meterRegistry.gaugeCollectionSize(PENDING, Tags.empty(), new ArrayBlockingQueue<>(capacity));
+        batchSizes = meterRegistry.summary(SIZE);
+        running = true;
+        committer = new Thread(this::run, "loan-group-committer");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread current = committer;
+        if (current == null) {
+            return;
+        }
+        try {
+            current.join(waitTimeout.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (current.isAlive()) {
+            log.warn("Loan group committer did not drain within {}, {} loans left", waitTimeout, queue.size());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    /**
+     * After {@link #stop()} it keeps committing until the queue is empty.
+     */
+    private void run() {
+        List<Loan> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                collect(batch);
+            } catch (InterruptedException e) {
+                log.warn("Loan group committer interrupted while collecting a batch");
+            }
+            if (!batch.isEmpty()) {
+                commit(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void collect(List<Loan> batch) throws InterruptedException {
+        Loan first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + maxDelay.toNanos();
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0) {
+                return;
+            }
+            Loan next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void commit(List<Loan> batch) {
+        batchSizes.record(batch.size());
+        List<Loan> ordered = new ArrayList<>(batch.size());
+        List<Long> bookIds = new ArrayList<>();
+        List<LoanRequest> requests = new ArrayList<>();
+        for (Loan loan : batch) {
+            if (loan.userId == null) {
+                ordered.add(loan);
+                bookIds.add(loan.bookId);
+            }
+        }
+        for (Loan loan : batch) {
+            if (loan.userId != null) {
+                ordered.add(loan);
+                requests.add(new LoanRequest(loan.bookId, loan.userId));
+            }
+        }
+        List<LoanResult> results;
+        try {
+            results = bookService.returnAndTakeBooks(bookIds, requests);
+        } catch (RuntimeException e) {
+            log.warn("Group commit of {} loans failed, committing them one by one", batch.size(), e);
+            batch.forEach(this::commitAlone);
+            return;
+        }
+        for (int i = 0; i < ordered.size(); i++) {
+            ordered.get(i).result.complete(results.get(i));
+        }
+    }
+
+    private void commitAlone(Loan loan) {
+        try {
+            List<LoanResult> results = loan.userId == null
+                    ? bookService.returnBooks(Collections.singletonList(loan.bookId))
+                    : bookService.takeBooks(Collections.singletonList(new LoanRequest(loan.bookId, loan.userId)));
+            loan.result.complete(results.get(0));
+        } catch (RuntimeException e) {
+            loan.result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * A take, or a return when there is no user.
+     */
+    private static final class Loan {
+
+        private final Long bookId;
+
+        private final Long userId;
+
+        private final CompletableFuture<LoanResult> result = new CompletableFuture<>();
+
+        Loan(Long bookId, Long userId) {
+            this.bookId = bookId;
+            this.userId = userId;
+        }
+    }
+}
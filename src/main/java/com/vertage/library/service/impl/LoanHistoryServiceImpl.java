@@ -0,0 +1,40 @@
+package com.vertage.library.service.impl;
+
+import com.vertage.library.config.MetricsConfig;
+import com.vertage.library.entity.LoanEvent;
+import com.vertage.library.repository.LoanEventRepository;
+import com.vertage.library.service.LoanHistoryService;
+import io.micrometer.core.annotation.Timed;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Reads the history written by {@link LoanHistoryWriter}; the newest events may still be queued,
+ * so a loan shows up here shortly after it happened rather than immediately.
+ */
+@Service
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+public class LoanHistoryServiceImpl implements LoanHistoryService {
+
+    @NonNull
+    private final LoanEventRepository loanEventRepository;
+
+    @Override
+    @Timed(MetricsConfig.SERVICE_TIMER)
+    public List<LoanEvent> getByBook(@NonNull Long bookId, Long after, int limit) {
+        return loanEventRepository.findByBookIdAndIdGreaterThanOrderByIdAsc(bookId,
+                PageRequests.cursor(after), PageRequests.limit(limit));
+    }
+
+    @Override
+    @Timed(MetricsConfig.SERVICE_TIMER)
+    public List<LoanEvent> getByUser(@NonNull Long userId, Long after, int limit) {
+        return loanEventRepository.findByUserIdAndIdGreaterThanOrderByIdAsc(userId,
+                PageRequests.cursor(after), PageRequests.limit(limit));
+    }
+}
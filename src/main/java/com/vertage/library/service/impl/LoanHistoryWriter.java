@@ -0,0 +1,191 @@
+package com.vertage.library.service.impl;
+
+import com.vertage.library.entity.LoanEvent;
+import com.vertage.library.event.BookChangedEvent;
+import com.vertage.library.repository.LoanEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Write-behind for the loan history: takes and returns are queued once committed and a single background
+ * thread appends them in JDBC batches, so the history adds no statement to the take and return path.
+ * <p>
+ * The queue is bounded. An event finding it full is dropped and counted at once, so a slow database never
+ * holds up the request thread. Stopping the context drains the queue before the data source closes.
+ * <p>
+ * Events of different transactions reach the queue in whichever order their commits are observed, so a return
+ * may be queued before the take it ends. Every event is therefore complete on its own: a return carries the
+ * holder the book service read under the row lock, and a return of a book nobody held is not recorded.
+ */
+@Slf4j
+@Service
+public class LoanHistoryWriter implements SmartLifecycle {
+
+    static final String PENDING = "library.loan.events.pending";
+    static final String DROPPED = "library.loan.events.dropped";
+    static final String FAILED = "library.loan.events.failed";
+
+    /**
+     * Stops after the web server has stopped taking requests, so nothing is queued behind the drain.
+     */
+    private static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 2048;
+
+    /**
+     * How long the drain waits for an event reserved but not offered yet.
+     */
+    private static final long DRAIN_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final LoanEventRepository loanEventRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${library.loan-history.capacity:10000}")
+    private int capacity;
+
+    @Value("${library.loan-history.batch-size:500}")
+    private int batchSize;
+
+    @Value("${library.loan-history.flush-interval:200ms}")
+    private Duration flushInterval;
+
+    @Value("${library.loan-history.drain-timeout:30s}")
+    private Duration drainTimeout;
+
+    private final Queue<LoanEvent> queue = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger pending;
+
+    private final Counter dropped;
+
+    private final Counter failed;
+
+    private volatile Thread writer;
+
+    private volatile boolean running;
+
+    public LoanHistoryWriter(@NonNull LoanEventRepository loanEventRepository,
+                             @NonNull TransactionTemplate transactionTemplate,
+                             @NonNull MeterRegistry meterRegistry) {
+        this.loanEventRepository = loanEventRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.pending = meterRegistry.gauge(PENDING, new AtomicInteger());
+        this.dropped = meterRegistry.counter(DROPPED);
+        this.failed = meterRegistry.counter(FAILED);
+    }
+
+    @TransactionalEventListener
+    public void onBookChanged(BookChangedEvent event) {
+        if (event.getType() == BookChangedEvent.Type.TAKEN) {
+            enqueue(new LoanEvent(null, event.getBookId(), event.getUserId(), LoanEvent.Type.TAKEN, Instant.now()));
+        } else if (event.getType() == BookChangedEvent.Type.RETURNED && event.getPreviousUserId() != null) {
+            enqueue(new LoanEvent(null, event.getBookId(), event.getPreviousUserId(), LoanEvent.Type.RETURNED,
+                    Instant.now()));
+        }
+    }
+
+    void enqueue(LoanEvent event) {
+        if (!reserve()) {
+            dropped.increment();
+            LockSupport.unpark(writer);
+            log.warn("Loan history queue is full, dropped {} of book {}", event.getType(), event.getBookId());
+            return;
+        }
+        queue.offer(event);
+        if (pending.get() >= batchSize) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private boolean reserve() {
+        int current;
+        do {
+            current = pending.get();
+            if (current >= capacity) {
+                return false;
+            }
+        } while (!pending.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    @Override
+    public void start() {
+        if (capacity < 1 || batchSize < 1) {
+            throw new IllegalStateException("library.loan-history.capacity and batch-size must be positive");
+        }
+        running = true;
+        writer = new Thread(this::run, "loan-history-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread current = writer;
+        LockSupport.unpark(current);
+        try {
+            current.join(drainTimeout.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (current.isAlive()) {
+            log.warn("Loan history writer did not drain within {}, {} events left", drainTimeout, pending.get());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    /**
+     * Writes whatever is queued, up to a batch at a time, and sleeps for the flush interval once the queue
+     * is empty; a full batch wakes it early. After {@link #stop()} it keeps going until the queue is empty.
+     */
+    private void run() {
+        List<LoanEvent> batch = new ArrayList<>(batchSize);
+        while (running || pending.get() > 0) {
+            LoanEvent event;
+            while (batch.size() < batchSize && (event = queue.poll()) != null) {
+                batch.add(event);
+            }
+            if (batch.isEmpty()) {
+                LockSupport.parkNanos(this, running ? flushInterval.toNanos() : DRAIN_PARK_NANOS);
+                continue;
+            }
+            pending.addAndGet(-batch.size());
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(List<LoanEvent> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> loanEventRepository.appendAll(batch));
+        } catch (RuntimeException e) {
+            failed.increment(batch.size());
+            log.error("Could not write {} loan history events", batch.size(), e);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.vertage.library.service.impl;
+
+import com.vertage.library.exception.InvalidRequestDataException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * Keyset pagination helpers: a page is "up to {@code limit} rows with id greater than the cursor",
+ * so every page costs one index range scan no matter how deep the client has scrolled.
+ */
+final class PageRequests {
+
+    static final int MAX_LIMIT = 1000;
+
+    private PageRequests() {
+    }
+
+    static long cursor(Long after) {
+        return after == null ? 0L : after;
+    }
+
+    static Pageable limit(int limit) {
+        return PageRequest.of(0, checkLimit(limit));
+    }
+
+    static int checkLimit(int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new InvalidRequestDataException("The limit must be between 1 and " + MAX_LIMIT);
+        }
+        return limit;
+    }
+}
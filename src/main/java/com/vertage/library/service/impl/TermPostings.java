@@ -0,0 +1,170 @@
+package com.vertage.library.service.impl;
+
+import com.vertage.library.util.LongLongHashMap;
+
+import java.util.Arrays;
+
+/**
+ * The books one index term occurs in, kept twice: {@code bookId -> term frequency} for lookups, and per
+ * frequency the book ids in ascending order, so the books can be walked best first (highest frequency,
+ * then lowest id) without sorting at query time.
+ * <p>
+ * Removing a book drops only its lookup entry; its ordered id turns stale and is skipped by {@link Walk}.
+ * The ordered ids are compacted once they hold more stale entries than live ones. Not thread-safe.
+ */
+final class TermPostings {
+
+    private static final int MIN_STALE_TO_COMPACT = 16;
+
+    private final LongLongHashMap frequencies = new LongLongHashMap(1, 0L);
+
+    /**
+     * {@code ids[f - 1]} holds, ascending in its first {@code counts[f - 1]} slots, the books seen with frequency f.
+     */
+    private long[][] ids = new long[0][];
+
+    private int[] counts = new int[0];
+
+    private int stale;
+
+    int size() {
+        return frequencies.size();
+    }
+
+    /**
+     * @return the term frequency in the book, or 0 if the term does not occur in it
+     */
+    long frequency(long bookId) {
+        return frequencies.get(bookId);
+    }
+
+    /**
+     * @return an upper bound of the frequencies, exact unless stale entries hold the highest one
+     */
+    int maxFrequency() {
+        return counts.length;
+    }
+
+    void put(long bookId, int frequency) {
+        long previous = frequencies.put(bookId, frequency);
+        if (previous == frequency) {
+            return;
+        }
+        if (previous != 0) {
+            stale++;
+        }
+        insert(frequency, bookId);
+        compactIfStale();
+    }
+
+    void remove(long bookId) {
+        if (frequencies.remove(bookId) != 0) {
+            stale++;
+            compactIfStale();
+        }
+    }
+
+    /**
+     * Walks the books with frequency at most {@code fromFrequency}, skipping at that frequency the ids up to
+     * {@code afterId}.
+     */
+    Walk walk(int fromFrequency, long afterId) {
+        return new Walk(Math.min(fromFrequency, counts.length), afterId);
+    }
+
+    private void insert(int frequency, long bookId) {
+        if (frequency > ids.length) {
+            ids = Arrays.copyOf(ids, frequency);
+            counts = Arrays.copyOf(counts, frequency);
+        }
+        int bucket = frequency - 1;
+        long[] bucketIds = ids[bucket] == null ? new long[1] : ids[bucket];
+        int count = counts[bucket];
+        int position = count == 0 || bucketIds[count - 1] < bookId
+                ? count
+                : Arrays.binarySearch(bucketIds, 0, count, bookId);
+        if (position >= 0 && position < count) {
+            // The stale entry of an earlier put with the same frequency is live again.
+            stale--;
+            return;
+        }
+        position = position < 0 ? -position - 1 : position;
+        if (count == bucketIds.length) {
+            bucketIds = Arrays.copyOf(bucketIds, count << 1);
+        }
+        System.arraycopy(bucketIds, position, bucketIds, position + 1, count - position);
+        bucketIds[position] = bookId;
+        ids[bucket] = bucketIds;
+        counts[bucket] = count + 1;
+    }
+
+    private void compactIfStale() {
+        if (stale < MIN_STALE_TO_COMPACT || stale <= frequencies.size()) {
+            return;
+        }
+        int highest = 0;
+        for (int bucket = 0; bucket < ids.length; bucket++) {
+            int live = 0;
+            for (int i = 0; i < counts[bucket]; i++) {
+                if (frequencies.get(ids[bucket][i]) == bucket + 1) {
+                    ids[bucket][live++] = ids[bucket][i];
+                }
+            }
+            counts[bucket] = live;
+            ids[bucket] = live == 0 ? null : Arrays.copyOf(ids[bucket], live);
+            highest = live == 0 ? highest : bucket + 1;
+        }
+        ids = Arrays.copyOf(ids, highest);
+        counts = Arrays.copyOf(counts, highest);
+        stale = 0;
+    }
+
+    /**
+     * A position in the best-first order of the live entries.
+     */
+    final class Walk {
+
+        private int frequency;
+
+        private int index;
+
+        private long bookId;
+
+        private Walk(int fromFrequency, long afterId) {
+            frequency = fromFrequency;
+            if (frequency > 0 && afterId > 0 && counts[frequency - 1] > 0) {
+                int position = Arrays.binarySearch(ids[frequency - 1], 0, counts[frequency - 1], afterId);
+                index = position < 0 ? -position - 1 : position + 1;
+            }
+        }
+
+        /**
+         * Moves to the next live entry.
+         *
+         * @return {@code false} once the books are exhausted
+         */
+        boolean advance() {
+            while (frequency > 0) {
+                int bucket = frequency - 1;
+                while (index < counts[bucket]) {
+                    long candidate = ids[bucket][index++];
+                    if (frequencies.get(candidate) == frequency) {
+                        bookId = candidate;
+                        return true;
+                    }
+                }
+                frequency--;
+                index = 0;
+            }
+            return false;
+        }
+
+        long bookId() {
+            return bookId;
+        }
+
+        int frequency() {
+            return frequency;
+        }
+    }
+}
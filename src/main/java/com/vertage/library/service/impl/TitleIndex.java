@@ -0,0 +1,356 @@
+package com.vertage.library.service.impl;
+
+import com.vertage.library.dto.BookSearchHit;
+import com.vertage.library.util.LongObjectHashMap;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Inverted index over book names: every term maps to its {@link TermPostings}, walkable best first.
+ * Terms live in a sorted dictionary, so a query term also matches the terms it is a prefix of
+ * without storing n-grams. A query matches a book when every query term matches one of its terms.
+ * Not thread-safe.
+ */
+final class TitleIndex {
+
+    static final int MAX_QUERY_TERMS = 8;
+
+    /**
+     * Shorter query terms match whole terms only; their prefix expansions would cover most of the catalog.
+     */
+    static final int MIN_PREFIX_LENGTH = 3;
+
+    /**
+     * Prefix expansions per query term, taken in dictionary order.
+     */
+    static final int MAX_EXPANSIONS = 32;
+
+    private static final double EXACT_BOOST = 2.0;
+    private static final double SCORE_SCALE = 1000.0;
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Comparator<BookSearchHit> RANKING = Comparator
+            .comparingInt(BookSearchHit::getScore).reversed()
+            .thenComparingLong(BookSearchHit::getId);
+
+    private final NavigableMap<String, TermPostings> postings = new TreeMap<>();
+
+    private final LongObjectHashMap<String> names;
+
+    TitleIndex(int expectedSize) {
+        names = new LongObjectHashMap<>(expectedSize);
+    }
+
+    /**
+     * Lower-cases, strips accents and splits on everything that is not a letter or a digit.
+     */
+    static List<String> terms(String text) {
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        List<String> terms = new ArrayList<>();
+        for (String term : SEPARATORS.split(folded)) {
+            if (!term.isEmpty()) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    int size() {
+        return names.size();
+    }
+
+    void put(long bookId, String name) {
+        remove(bookId);
+        if (name == null) {
+            return;
+        }
+        names.put(bookId, name);
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String term : terms(name)) {
+            frequencies.merge(term, 1, Integer::sum);
+        }
+        frequencies.forEach((term, frequency) ->
+                postings.computeIfAbsent(term, key -> new TermPostings()).put(bookId, frequency));
+    }
+
+    void remove(long bookId) {
+        String name = names.remove(bookId);
+        if (name == null) {
+            return;
+        }
+        for (String term : new HashSet<>(terms(name))) {
+            TermPostings books = postings.get(term);
+            if (books != null) {
+                books.remove(bookId);
+                if (books.size() == 0) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} hits ranked below the cursor {@code (afterScore, afterId)}, best first.
+     * A book scores, for each query term, the best {@code frequency * idf} among the index terms it matched,
+     * doubled for an exact match.
+     * <p>
+     * A single query term walks the postings of its index terms best first from the cursor, so a page costs
+     * O(limit) whatever the number of matches. Several query terms walk the rarest one best first, from the
+     * first book whose score for that term alone does not already rank it before the cursor, and stop once no
+     * remaining book can enter the page; every book matching all the terms is reachable by paging.
+     *
+     * @param afterScore score of the last hit of the previous page, or {@code null} for the first page
+     */
+    List<BookSearchHit> search(List<String> queryTerms, Integer afterScore, long afterId, int limit) {
+        List<Clause> clauses = new ArrayList<>(queryTerms.size());
+        for (String term : queryTerms) {
+            Clause clause = clause(term);
+            if (clause.postings.isEmpty()) {
+                return Collections.emptyList();
+            }
+            clauses.add(clause);
+        }
+        if (clauses.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<BookSearchHit> hits = clauses.size() == 1
+                ? page(clauses.get(0), afterScore, afterId, limit)
+                : conjunction(clauses, afterScore, afterId, limit);
+        hits.forEach(hit -> hit.setName(names.get(hit.getId())));
+        return hits;
+    }
+
+    private static List<BookSearchHit> page(Clause clause, Integer afterScore, long afterId, int limit) {
+        PriorityQueue<Entry> entries = clause.entries(afterScore, afterId);
+        List<BookSearchHit> hits = new ArrayList<>(limit);
+        while (hits.size() < limit && !entries.isEmpty()) {
+            Entry entry = entries.poll();
+            if (clause.best(entry.bookId()) == entry.term) {
+                hits.add(new BookSearchHit(entry.bookId(), null, entry.score));
+            }
+            if (entry.advance()) {
+                entries.add(entry);
+            }
+        }
+        return hits;
+    }
+
+    private static List<BookSearchHit> conjunction(List<Clause> clauses, Integer afterScore, long afterId, int limit) {
+        Clause driver = Collections.min(clauses, Comparator.comparingLong(Clause::size));
+        double othersMax = 0;
+        for (Clause clause : clauses) {
+            othersMax += clause == driver ? 0 : clause.maxWeighted();
+        }
+        // The other terms only add to a book's score, so books whose driver score alone is above the cursor
+        // rank before it. At the cursor's score the ids are not skipped, the other terms may still lift them.
+        PriorityQueue<Entry> entries = driver.entries(afterScore, 0L);
+        PriorityQueue<BookSearchHit> top = new PriorityQueue<>(limit + 1, RANKING.reversed());
+        while (!entries.isEmpty()) {
+            Entry entry = entries.poll();
+            // Later entries score at most this one, within rounding.
+            if (top.size() == limit && toScore((entry.score + 0.5) / SCORE_SCALE + othersMax) < top.peek().getScore()) {
+                break;
+            }
+            long bookId = entry.bookId();
+            int score = score(clauses, driver, entry, bookId);
+            if (score != 0 && isAfter(score, bookId, afterScore, afterId)) {
+                if (top.size() < limit) {
+                    top.add(new BookSearchHit(bookId, null, score));
+                } else if (!isAfter(score, bookId, top.peek().getScore(), top.peek().getId())) {
+                    top.poll();
+                    top.add(new BookSearchHit(bookId, null, score));
+                }
+            }
+            if (entry.advance()) {
+                entries.add(entry);
+            }
+        }
+        List<BookSearchHit> hits = new ArrayList<>(top);
+        hits.sort(RANKING);
+        return hits;
+    }
+
+    private static boolean isAfter(int score, long bookId, Integer afterScore, long afterId) {
+        return afterScore == null || score < afterScore || (score == afterScore && bookId > afterId);
+    }
+
+    /**
+     * @return the score of the driver entry's book, or 0 if another clause misses it or the entry is not the
+     * book's best in the driver clause
+     */
+    private static int score(List<Clause> clauses, Clause driver, Entry entry, long bookId) {
+        double total = 0;
+        for (Clause clause : clauses) {
+            double best = clause == driver ? 0 : clause.score(bookId);
+            if (clause != driver && best == 0) {
+                return 0;
+            }
+            total += best;
+        }
+        if (driver.best(bookId) != entry.term) {
+            return 0;
+        }
+        return toScore(total + entry.weighted());
+    }
+
+    private static int toScore(double weighted) {
+        return (int) Math.max(1, Math.round(weighted * SCORE_SCALE));
+    }
+
+    private Clause clause(String term) {
+        Clause clause = new Clause();
+        TermPostings exact = postings.get(term);
+        if (exact != null) {
+            clause.add(exact, idf(exact) * EXACT_BOOST);
+        }
+        if (term.length() >= MIN_PREFIX_LENGTH) {
+            Iterator<TermPostings> expansions = postings
+                    .subMap(term, false, term + Character.MAX_VALUE, false).values().iterator();
+            for (int i = 0; i < MAX_EXPANSIONS && expansions.hasNext(); i++) {
+                TermPostings books = expansions.next();
+                clause.add(books, idf(books));
+            }
+        }
+        return clause;
+    }
+
+    private double idf(TermPostings books) {
+        return Math.log(1.0 + (double) names.size() / books.size());
+    }
+
+    /**
+     * The index terms one query term matched, with their weights.
+     */
+    private static final class Clause {
+
+        private final List<TermPostings> postings = new ArrayList<>();
+
+        private double[] weights = new double[4];
+
+        private long size;
+
+        void add(TermPostings books, double weight) {
+            if (postings.size() == weights.length) {
+                weights = Arrays.copyOf(weights, weights.length << 1);
+            }
+            weights[postings.size()] = weight;
+            postings.add(books);
+            size += books.size();
+        }
+
+        long size() {
+            return size;
+        }
+
+        double score(long bookId) {
+            int term = best(bookId);
+            return term < 0 ? 0 : postings.get(term).frequency(bookId) * weights[term];
+        }
+
+        /**
+         * A book matching several index terms is ranked once, by the first of those that weighs the most.
+         *
+         * @return that term, or -1 if the book matches none
+         */
+        int best(long bookId) {
+            int best = -1;
+            double bestWeighted = 0;
+            for (int i = 0; i < postings.size(); i++) {
+                double weighted = postings.get(i).frequency(bookId) * weights[i];
+                if (weighted > bestWeighted) {
+                    best = i;
+                    bestWeighted = weighted;
+                }
+            }
+            return best;
+        }
+
+        double maxWeighted() {
+            double max = 0;
+            for (int i = 0; i < postings.size(); i++) {
+                max = Math.max(max, postings.get(i).maxFrequency() * weights[i]);
+            }
+            return max;
+        }
+
+        /**
+         * @return one entry per index term, positioned at its best book ranked below the cursor
+         */
+        PriorityQueue<Entry> entries(Integer afterScore, long afterId) {
+            PriorityQueue<Entry> entries = new PriorityQueue<>(postings.size());
+            for (int i = 0; i < postings.size(); i++) {
+                TermPostings books = postings.get(i);
+                double weight = weights[i];
+                int from = books.maxFrequency();
+                while (afterScore != null && from > 0 && toScore(from * weight) > afterScore) {
+                    from--;
+                }
+                boolean atCursor = afterScore != null && from > 0 && toScore(from * weight) == afterScore;
+                Entry entry = new Entry(i, weight, books.walk(from, atCursor ? afterId : 0L));
+                if (entry.advance()) {
+                    entries.add(entry);
+                }
+            }
+            return entries;
+        }
+    }
+
+    /**
+     * The current book of one index term's walk; entries order by score descending, then id.
+     */
+    private static final class Entry implements Comparable<Entry> {
+
+        private final int term;
+
+        private final double weight;
+
+        private final TermPostings.Walk walk;
+
+        private int score;
+
+        Entry(int term, double weight, TermPostings.Walk walk) {
+            this.term = term;
+            this.weight = weight;
+            this.walk = walk;
+        }
+
+        boolean advance() {
+            if (!walk.advance()) {
+                return false;
+            }
+            score = toScore(walk.frequency() * weight);
+            return true;
+        }
+
+        long bookId() {
+            return walk.bookId();
+        }
+
+        double weighted() {
+            return walk.frequency() * weight;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            if (score != other.score) {
+                return Integer.compare(other.score, score);
+            }
+            return Long.compare(bookId(), other.bookId());
+        }
+    }
+}
@@ -1,39 +1,171 @@
 package com.vertage.library.service.impl;
 
+import com.vertage.library.config.CacheConfig;
+import com.vertage.library.config.MetricsConfig;
+import com.vertage.library.dto.UserView;
 import com.vertage.library.entity.User;
+import com.vertage.library.event.BookChangedEvent;
+import com.vertage.library.exception.PreconditionFailedException;
+import com.vertage.library.exception.UserHoldsBooksException;
 import com.vertage.library.exception.UserNotFoundException;
+import com.vertage.library.repository.BookRepository;
 import com.vertage.library.repository.UserRepository;
 import com.vertage.library.service.UserService;
+import com.vertage.library.util.SingleFlight;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
+import org.hibernate.Hibernate;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
 
 @Service
-@RequiredArgsConstructor
+@Transactional
 public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
 
+    private final BookRepository bookRepository;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final SingleFlight<Long, UserView> viewLoads;
+
+    public UserServiceImpl(UserRepository userRepository, BookRepository bookRepository,
+                           ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.bookRepository = bookRepository;
+        this.eventPublisher = eventPublisher;
+        this.viewLoads = new SingleFlight<>(CacheConfig.USERS, meterRegistry);
+    }
+
     @Override
-    public List<User> getAll() {
-        return userRepository.findAll();
+    @Timed(MetricsConfig.SERVICE_TIMER)
+    @Transactional(readOnly = true)
+    public List<UserView> getAll(Long after, int limit) {
+        return userRepository.findViewsAfter(PageRequests.cursor(after), PageRequests.limit(limit));
     }
 
     @Override
+    @Timed(MetricsConfig.SERVICE_TIMER)
+    @Transactional(readOnly = true)
     public User getById(@NonNull Long userId) {
-        return userRepository.findById(userId).orElseThrow(UserNotFoundException::new);
+        return userRepository.findWithBooksById(userId).orElseThrow(UserNotFoundException::new);
     }
 
+    /**
+     * Concurrent cache misses of one user share a single query on the primary,
+     * see {@link BookServiceImpl#getViewById(Long)}.
+     */
     @Override
+    @Timed(MetricsConfig.SERVICE_TIMER)
+    @Cacheable(cacheNames = CacheConfig.USERS, key = "#userId")
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public UserView getViewById(@NonNull Long userId) {
+        Supplier<UserView> load = () -> userRepository.findViewById(userId).orElseThrow(UserNotFoundException::new);
+        return TransactionSynchronizationManager.isActualTransactionActive() ? load.get() : viewLoads.get(userId, load);
+    }
+
+    /**
+     * Book views carry the holder's name, so renaming or removing a user evicts them too.
+     */
+    @Override
+    @Timed(MetricsConfig.SERVICE_TIMER)
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.USERS, key = "#user.id", condition = "#user.id != null"),
+            @CacheEvict(cacheNames = CacheConfig.BOOKS, allEntries = true, condition = "#user.id != null")})
     public User save(@NonNull User user) {
         return userRepository.save(user);
     }
 
     @Override
+    @Timed(MetricsConfig.SERVICE_TIMER)
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.USERS, key = "#userId"),
+            @CacheEvict(cacheNames = CacheConfig.BOOKS, allEntries = true)})
+    public User update(@NonNull Long userId, @NonNull User user, String expectedRevision) {
+        UserView current = userRepository.findViewById(userId).orElse(null);
+        if (expectedRevision != null && (current == null || !expectedRevision.equals(current.getRevision()))) {
+            throw new PreconditionFailedException();
+        }
+        user.setId(userId);
+        if (current != null) {
+            user.setVersion(current.getVersion());
+        }
+        User saved = userRepository.saveAndFlush(user);
+        Hibernate.initialize(saved.getBooks());
+        return saved;
+    }
+
+    @Override
+    @Timed(MetricsConfig.SERVICE_TIMER)
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.USERS, key = "#userId"),
+            @CacheEvict(cacheNames = CacheConfig.BOOKS, allEntries = true)})
     public void deleteById(@NonNull Long userId) {
-        userRepository.deleteById(userId);
+        try {
+            userRepository.deleteById(userId);
+            userRepository.flush();
+        } catch (DataIntegrityViolationException e) {
+            throw new UserHoldsBooksException();
+        }
+    }
+
+    @Override
+    @Timed(MetricsConfig.SERVICE_TIMER)
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.USERS, key = "#userId"),
+            @CacheEvict(cacheNames = CacheConfig.BOOKS, allEntries = true)})
+    public void releaseBooksAndDeleteById(@NonNull Long userId) {
+        if (delete(Collections.singleton(userId), true) == 0) {
+            throw new UserNotFoundException();
+        }
     }
 
+    @Override
+    @Timed(MetricsConfig.SERVICE_TIMER)
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.USERS, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.BOOKS, allEntries = true)})
+    public int deleteByIds(@NonNull List<Long> userIds, boolean releaseBooks) {
+        BookServiceImpl.checkBatchSize(userIds);
+        Set<Long> ids = new LinkedHashSet<>(userIds);
+        ids.remove(null);
+        return ids.isEmpty() ? 0 : delete(ids, releaseBooks);
+    }
+
+    /**
+     * The books are locked before they are released, so exactly the books released are published as returned.
+     * Without releasing, a user still holding books fails on fk_user.
+     */
+    private int delete(Collection<Long> userIds, boolean releaseBooks) {
+        if (releaseBooks) {
+            Map<Long, Long> holders = bookRepository.lockBooksHeldBy(userIds);
+            if (!holders.isEmpty()) {
+                bookRepository.releaseBooksHeldBy(userIds);
+                holders.forEach((bookId, userId) -> eventPublisher.publishEvent(
+                        new BookChangedEvent(BookChangedEvent.Type.RETURNED, bookId, null, null, userId)));
+            }
+        }
+        try {
+            return userRepository.deleteByIdIn(userIds);
+        } catch (DataIntegrityViolationException e) {
+            throw new UserHoldsBooksException();
+        }
+    }
 }
@@ -0,0 +1,143 @@
+package com.vertage.library.startup;
+
+import liquibase.integration.spring.SpringLiquibase;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Skips Liquibase on boots where nothing in the changelog changed. Parsing the changelog and checking every
+ * changeset against {@code DATABASECHANGELOG} costs a noticeable part of startup even when there is
+ * nothing to apply.
+ * <p>
+ * The fingerprint is a SHA-256 over the contents of every file under the changelog's directory, plus the
+ * Liquibase contexts and labels. After a successful update it is recorded in {@code tb_changelog_fingerprint};
+ * a later boot with the same fingerprint sets {@link SpringLiquibase#setShouldRun(boolean) shouldRun} to
+ * {@code false}. Any change to a changelog file, or a database without the table, runs Liquibase as usual.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class ChangelogFingerprint implements BeanPostProcessor {
+
+    static final String SELECT_SQL = "SELECT COUNT(*) FROM tb_changelog_fingerprint WHERE fingerprint = ?";
+
+    static final String INSERT_SQL = "INSERT INTO tb_changelog_fingerprint (fingerprint, applied_at) VALUES (?, ?)";
+
+    private static final String CLASSPATH = "classpath:";
+
+    @NonNull
+    private final ResourcePatternResolver resourceResolver;
+
+    /**
+     * {@code spring.liquibase.enabled}; a Liquibase that does not run must not be recorded as applied.
+     */
+    private final boolean liquibaseEnabled;
+
+    /**
+     * Fingerprints waiting to be recorded once their Liquibase bean has run, by bean name.
+     */
+    private final Map<String, String> pending = new ConcurrentHashMap<>();
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (liquibaseEnabled && bean instanceof SpringLiquibase) {
+            SpringLiquibase liquibase = (SpringLiquibase) bean;
+            String fingerprint = fingerprint(liquibase);
+            if (isRecorded(new JdbcTemplate(liquibase.getDataSource()), fingerprint)) {
+                log.info("Changelog {} unchanged since it was last applied, skipping Liquibase", liquibase.getChangeLog());
+                liquibase.setShouldRun(false);
+            } else {
+                pending.put(beanName, fingerprint);
+            }
+        }
+        return bean;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        String fingerprint = pending.remove(beanName);
+        if (fingerprint != null) {
+            record(new JdbcTemplate(((SpringLiquibase) bean).getDataSource()), fingerprint);
+        }
+        return bean;
+    }
+
+    String fingerprint(SpringLiquibase liquibase) {
+        String changeLog = liquibase.getChangeLog();
+        String path = changeLog.startsWith(CLASSPATH) ? changeLog.substring(CLASSPATH.length()) : changeLog;
+        String root = path.substring(0, path.lastIndexOf('/') + 1);
+        try {
+            Map<String, Resource> files = new TreeMap<>();
+            for (Resource resource : resourceResolver.getResources("classpath*:" + root + "**/*")) {
+                if (resource.isReadable()) {
+                    String url = resource.getURL().toString();
+                    files.put(url.substring(url.lastIndexOf(root)), resource);
+                }
+            }
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.valueOf(liquibase.getContexts()).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            digest.update(String.valueOf(liquibase.getLabels()).getBytes(StandardCharsets.UTF_8));
+            for (Map.Entry<String, Resource> file : files.entrySet()) {
+                digest.update((byte) '\n');
+                digest.update(file.getKey().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+                try (InputStream in = file.getValue().getInputStream()) {
+                    digest.update(StreamUtils.copyToByteArray(in));
+                }
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the changelog under " + root, e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A database the table has not been created in yet counts as not recorded.
+     */
+    private static boolean isRecorded(JdbcTemplate jdbcTemplate, String fingerprint) {
+        try {
+            Integer count = jdbcTemplate.queryForObject(SELECT_SQL, Integer.class, fingerprint);
+            return count != null && count > 0;
+        } catch (DataAccessException e) {
+            log.debug("No changelog fingerprint recorded", e);
+            return false;
+        }
+    }
+
+    /**
+     * Another instance that applied the same changelog at the same time may have recorded it first.
+     */
+    private static void record(JdbcTemplate jdbcTemplate, String fingerprint) {
+        try {
+            jdbcTemplate.update(INSERT_SQL, fingerprint, Timestamp.from(Instant.now()));
+        } catch (DuplicateKeyException e) {
+            log.debug("Changelog fingerprint {} already recorded", fingerprint);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.vertage.library.startup;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.RuntimeMXBean;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Logs where startup went once the application is ready: the time from JVM start to ready, the top-level
+ * phases of {@link org.springframework.boot.SpringApplication#run(String...)} and the slowest beans to
+ * instantiate. A bean's time includes the beans it pulled in. Reads the steps recorded by the
+ * {@link BufferingApplicationStartup} that {@code LibraryApplication} installs, without draining them,
+ * so {@code /actuator/startup} still serves the full timeline.
+ */
+@Slf4j
+public class StartupTimingReport implements ApplicationListener<ApplicationReadyEvent>, Ordered {
+
+    private static final String INSTANTIATE = "spring.beans.instantiate";
+    private static final String BEAN_NAME = "beanName";
+
+    private final int slowestBeans;
+
+    public StartupTimingReport(int slowestBeans) {
+        this.slowestBeans = slowestBeans;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        ApplicationStartup startup = event.getApplicationContext().getApplicationStartup();
+        if (!(startup instanceof BufferingApplicationStartup)) {
+            log.info("Startup steps are not recorded, no startup timing report");
+            return;
+        }
+        StartupTimeline timeline = ((BufferingApplicationStartup) startup).getBufferedTimeline();
+        log.info(report(timeline));
+    }
+
+    String report(StartupTimeline timeline) {
+        RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+        StringBuilder report = new StringBuilder("Startup timing:");
+        line(report, "jvm start to ready", Duration.ofMillis(runtime.getUptime()));
+        line(report, "jvm start to application start",
+                Duration.ofMillis(timeline.getStartTime().toEpochMilli() - runtime.getStartTime()));
+        List<StartupTimeline.TimelineEvent> events = timeline.getEvents();
+        Set<Long> ids = events.stream().map(event -> event.getStartupStep().getId()).collect(Collectors.toSet());
+        for (StartupTimeline.TimelineEvent event : events) {
+            StartupStep step = event.getStartupStep();
+            if (!ids.contains(step.getParentId()) && !INSTANTIATE.equals(step.getName())) {
+                line(report, step.getName(), event.getDuration());
+            }
+        }
+        List<StartupTimeline.TimelineEvent> beans = events.stream()
+                .filter(event -> INSTANTIATE.equals(event.getStartupStep().getName()))
+                .sorted(Comparator.comparing(StartupTimeline.TimelineEvent::getDuration).reversed())
+                .limit(slowestBeans)
+                .collect(Collectors.toList());
+        if (!beans.isEmpty()) {
+            report.append(System.lineSeparator()).append("  slowest beans:");
+            for (StartupTimeline.TimelineEvent bean : beans) {
+                line(report, "  " + beanName(bean.getStartupStep()), bean.getDuration());
+            }
+        }
+        return report.toString();
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    private static void line(StringBuilder report, String name, Duration duration) {
+        report.append(System.lineSeparator()).append(String.format("  %-60s %8d ms", name, duration.toMillis()));
+    }
+
+    private static String beanName(StartupStep step) {
+        for (StartupStep.Tag tag : step.getTags()) {
+            if (BEAN_NAME.equals(tag.getKey())) {
+                return tag.getValue();
+            }
+        }
+        return step.getName();
+    }
+}
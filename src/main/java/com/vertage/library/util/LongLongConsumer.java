@@ -0,0 +1,6 @@
+package com.vertage.library.util;
+
+@FunctionalInterface
+public interface LongLongConsumer {
+    void accept(long key, long value);
+}
@@ -0,0 +1,77 @@
+package com.vertage.library.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent loads of one key into a single call: the first caller runs the loader and every caller
+ * arriving while it runs waits for its result, or its exception. Nothing is kept after the load completes,
+ * so a caller arriving later starts a new load; caching is left to the caller.
+ * <p>
+ * Calls are counted in {@code library.singleflight.calls}, tagged with the flight name and whether the call
+ * ran the loader ({@code leader}) or shared one already in flight ({@code shared}).
+ */
+public class SingleFlight<K, V> {
+
+    public static final String CALLS = "library.singleflight.calls";
+
+    private final ConcurrentMap<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+
+    private final Counter leaders;
+
+    private final Counter followers;
+
+    public SingleFlight(String name, MeterRegistry meterRegistry) {
+        leaders = meterRegistry.counter(CALLS, "name", name, "result", "leader");
+        followers = meterRegistry.counter(CALLS, "name", name, "result", "shared");
+    }
+
+    public V get(K key, Supplier<V> loader) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = flights.putIfAbsent(key, flight);
+        if (inFlight != null) {
+            followers.increment();
+            return await(inFlight);
+        }
+        leaders.increment();
+        V value;
+        try {
+            value = loader.get();
+        } catch (RuntimeException | Error e) {
+            flights.remove(key, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+        flights.remove(key, flight);
+        flight.complete(value);
+        return value;
+    }
+
+    /**
+     * Number of keys being loaded right now.
+     */
+    public int inFlight() {
+        return flights.size();
+    }
+
+    private static <V> V await(CompletableFuture<V> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+}
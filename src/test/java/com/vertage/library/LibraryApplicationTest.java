@@ -0,0 +1,16 @@
+package com.vertage.library;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LibraryApplicationTest {
+
+    @Test
+    void recordsStartupOnlyForTheReport() {
+        assertFalse(LibraryApplication.recordsStartup(new String[0]));
+        assertFalse(LibraryApplication.recordsStartup(new String[]{"--library.startup.report=false"}));
+        assertTrue(LibraryApplication.recordsStartup(new String[]{"--library.startup.report=true"}));
+        assertTrue(LibraryApplication.recordsStartup(new String[]{"--spring.profiles.active=default,faststart"}));
+    }
+}
@@ -0,0 +1,216 @@
+package com.vertage.library.admission;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdmissionFilterTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private final AtomicBoolean saturated = new AtomicBoolean();
+
+    private final AtomicBoolean warmingUp = new AtomicBoolean();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private AimdLimiter reads;
+
+    private AimdLimiter writes;
+
+    private AdmissionFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        reads = new AimdLimiter("test-read", 1, 1, 1, Duration.ofSeconds(1), meterRegistry);
+        writes = new AimdLimiter("test-write", 1, 1, 1, Duration.ofSeconds(1), meterRegistry);
+        filter = new AdmissionFilter(reads, writes, new TokenBuckets<>(0.001, 2, 100), saturated::get, warmingUp::get,
+                meterRegistry, new ObjectMapper(), 128);
+    }
+
+    @Test
+    void admitsAndReleases() throws Exception {
+        assertEquals(200, perform(new MockHttpServletRequest("GET", "/books/1")).getStatus());
+        assertEquals(200, perform(new MockHttpServletRequest("PUT", "/books/1")).getStatus());
+
+        assertEquals(2, calls.get());
+        assertEquals(0, reads.getInFlight());
+        assertEquals(0, writes.getInFlight());
+    }
+
+    @Test
+    void exhaustedReadsDoNotBlockWrites() throws Exception {
+        reads.tryAcquire();
+
+        MockHttpServletResponse read = perform(new MockHttpServletRequest("GET", "/books"));
+        MockHttpServletResponse write = perform(new MockHttpServletRequest("PATCH", "/books/1/return"));
+
+        assertEquals(503, read.getStatus());
+        assertEquals("1", read.getHeader("Retry-After"));
+        assertEquals(200, write.getStatus());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void takesAreRateLimitedPerUser() throws Exception {
+        assertEquals(200, perform(take("1")).getStatus());
+        assertEquals(200, perform(take("1")).getStatus());
+        MockHttpServletResponse limited = perform(take("1"));
+
+        assertEquals(429, limited.getStatus());
+        assertTrue(Long.parseLong(limited.getHeader("Retry-After")) > 1);
+        assertEquals(200, perform(take("2")).getStatus());
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    void batchTakesChargeOneTokenPerItem() throws Exception {
+        assertEquals(200, perform(takes("[{\"bookId\":1,\"userId\":1},{\"bookId\":2,\"userId\":2}]")).getStatus());
+        assertEquals(200, perform(takes("[{\"bookId\":3,\"userId\":1},{\"bookId\":4,\"userId\":1}]")).getStatus());
+        MockHttpServletResponse limited = perform(takes("[{\"bookId\":5,\"userId\":2},{\"bookId\":6,\"userId\":1}]"));
+
+        assertEquals(429, limited.getStatus());
+        assertEquals(429, perform(take("1")).getStatus());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void rejectedBatchTakesRefundTheOtherUsers() throws Exception {
+        assertEquals(200, perform(take("2")).getStatus());
+        assertEquals(200, perform(take("2")).getStatus());
+
+        assertEquals(429, perform(takes("[{\"bookId\":1,\"userId\":1},{\"bookId\":2,\"userId\":2}]")).getStatus());
+        assertEquals(200, perform(take("1")).getStatus());
+        assertEquals(200, perform(take("1")).getStatus());
+        assertEquals(4, calls.get());
+        assertEquals(0, writes.getInFlight());
+    }
+
+    @Test
+    void shedTakesAreNotCharged() throws Exception {
+        saturated.set(true);
+        assertEquals(503, perform(take("1")).getStatus());
+        assertEquals(503, perform(takes("[{\"bookId\":1,\"userId\":1}]")).getStatus());
+        saturated.set(false);
+        writes.tryAcquire();
+        assertEquals(503, perform(take("1")).getStatus());
+        writes.cancel();
+
+        assertEquals(200, perform(take("1")).getStatus());
+        assertEquals(200, perform(take("1")).getStatus());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void batchTakesReachTheControllerWithTheirBody() throws Exception {
+        String body = "[{\"bookId\":1,\"userId\":1}]";
+        StringBuilder received = new StringBuilder();
+
+        filter.doFilter(takes(body), new MockHttpServletResponse(), new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                received.append(StreamUtils.copyToString(req.getInputStream(), StandardCharsets.UTF_8));
+            }
+        }));
+
+        assertEquals(body, received.toString());
+    }
+
+    @Test
+    void oversizedOrMalformedBatchTakes() throws Exception {
+        StringBuilder large = new StringBuilder("[");
+        for (int i = 1; i <= 10; i++) {
+            large.append(i > 1 ? "," : "").append("{\"bookId\":").append(i).append(",\"userId\":3}");
+        }
+        MockHttpServletResponse oversized = perform(takes(large.append("]").toString()));
+
+        assertEquals(413, oversized.getStatus());
+        assertNull(oversized.getHeader("Retry-After"));
+        assertEquals(200, perform(takes("not json")).getStatus());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void saturatedPoolShedsRequests() throws Exception {
+        saturated.set(true);
+
+        MockHttpServletResponse response = perform(new MockHttpServletRequest("POST", "/users"));
+
+        assertEquals(503, response.getStatus());
+        assertEquals("1", response.getHeader("Retry-After"));
+        assertEquals(0, calls.get());
+        assertEquals(0, writes.getInFlight());
+    }
+
+    @Test
+    void eventStreamIsNotLimited() throws Exception {
+        reads.tryAcquire();
+        saturated.set(true);
+
+        assertEquals(200, perform(new MockHttpServletRequest("GET", "/books/events")).getStatus());
+    }
+
+    @Test
+    void onlyWarmUpRequestsAreNotLimitedWhileWarmingUp() throws Exception {
+        warmingUp.set(true);
+        reads.tryAcquire();
+
+        assertEquals(200, perform(warmUp()).getStatus());
+        assertEquals(503, perform(new MockHttpServletRequest("GET", "/books/1")).getStatus());
+        assertEquals(1, reads.getInFlight());
+    }
+
+    @Test
+    void warmUpHeaderIsIgnoredOnceWarmUpIsOver() throws Exception {
+        reads.tryAcquire();
+
+        assertEquals(503, perform(warmUp()).getStatus());
+        assertEquals(0, calls.get());
+    }
+
+    private static MockHttpServletRequest warmUp() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/books/1");
+        request.addHeader(AdmissionFilter.WARM_UP, "true");
+        return request;
+    }
+
+    private static MockHttpServletRequest take(String userId) {
+        MockHttpServletRequest request = new MockHttpServletRequest("PATCH", "/books/1/take");
+        request.setParameter("userId", userId);
+        return request;
+    }
+
+    private static MockHttpServletRequest takes(String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("PATCH", "/books/take");
+        request.setContentType("application/json");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    private MockHttpServletResponse perform(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) {
+                calls.incrementAndGet();
+            }
+        }));
+        return response;
+    }
+}
@@ -0,0 +1,79 @@
+package com.vertage.library.admission;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AimdLimiterTest {
+
+    private static final long FAST = Duration.ofMillis(1).toNanos();
+    private static final long SLOW = Duration.ofSeconds(1).toNanos();
+
+    private final AimdLimiter limiter = new AimdLimiter("test", 4, 2, 6, Duration.ofMillis(100), new SimpleMeterRegistry());
+
+    @Test
+    void rejectsBeyondLimit() {
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+        assertFalse(limiter.tryAcquire());
+        assertEquals(4, limiter.getInFlight());
+    }
+
+    @Test
+    void fastRequestsUnderLoadRaiseLimitUpToMax() {
+        for (int i = 0; i < 10; i++) {
+            for (int j = 0; j < 3; j++) {
+                limiter.tryAcquire();
+            }
+            for (int j = 0; j < 3; j++) {
+                limiter.release(FAST, false);
+            }
+        }
+        assertEquals(6, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void idleRequestsDoNotRaiseLimit() {
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire();
+            limiter.release(FAST, false);
+        }
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    void slowOrFailedRequestsLowerLimitDownToMin() {
+        limiter.tryAcquire();
+        limiter.release(SLOW, false);
+        assertEquals(3, limiter.getLimit());
+
+        for (int i = 0; i < 20; i++) {
+            limiter.tryAcquire();
+            limiter.release(FAST, true);
+        }
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    void cancelledRequestsDoNotChangeLimit() {
+        for (int i = 0; i < 4; i++) {
+            limiter.tryAcquire();
+        }
+        for (int i = 0; i < 4; i++) {
+            limiter.cancel();
+        }
+        assertEquals(4, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void rejectsInconsistentLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new AimdLimiter("test", 1, 2, 6, Duration.ofMillis(100), new SimpleMeterRegistry()));
+        assertThrows(IllegalArgumentException.class, () -> new AimdLimiter("test", 4, 0, 6, Duration.ofMillis(100), new SimpleMeterRegistry()));
+    }
+}
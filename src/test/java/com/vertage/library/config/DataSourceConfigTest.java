@@ -0,0 +1,80 @@
+package com.vertage.library.config;
+
+import com.vertage.library.dto.BookView;
+import com.vertage.library.entity.Book;
+import com.vertage.library.service.BookService;
+import com.vertage.library.service.UserService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.url=jdbc:h2:mem:primary;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "library.datasource.replicas[0].url=jdbc:h2:mem:replica;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "library.jdbc.stream-fetch-size=1000",
+        "library.cache.enabled=false"})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class DataSourceConfigTest {
+
+    private static final String REPLICA_URL = "jdbc:h2:mem:replica;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+    @BeforeAll
+    void setUp() {
+        replica.execute("create table if not exists tb_user (id bigint primary key, name varchar(50), version bigint default 0)");
+        replica.execute("create table if not exists tb_book (id bigint primary key, name varchar(50), user_id bigint, version bigint default 0)");
+        replica.update("merge into tb_book key (id) values (1000, 'replica copy', null, 0)");
+        replica.update("merge into tb_book key (id) values (1001, 'replica copy', null, 0)");
+        jdbcTemplate.update("insert into tb_book (id, name, user_id) values (1000, 'primary copy', null)");
+        jdbcTemplate.update("insert into tb_book (id, name, user_id, version) values (1001, 'primary copy', null, 0)");
+        jdbcTemplate.update("insert into tb_user (id, name, version) values (1000, 'user1', 0)");
+        jdbcTemplate.update("insert into tb_user (id, name, version) values (1001, 'user2', 0)");
+    }
+
+    @Test
+    void readOnlyTransactionsUseReplica() {
+        assertEquals("replica copy", bookService.getById(1000L).getName());
+        assertEquals("replica copy", bookService.getAll(null, 10).get(0).getName());
+    }
+
+    @Test
+    void writesUsePrimary() {
+        Book saved = bookService.save(new Book(null, "new book", null));
+        bookService.takeBook(1000L, 1000L);
+
+        assertEquals("new book", jdbcTemplate.queryForObject(
+                "select name from tb_book where id = ?", String.class, saved.getId()));
+        assertEquals(1000L, jdbcTemplate.queryForObject("select user_id from tb_book where id = 1000", Long.class));
+        assertEquals(0, replica.queryForObject("select count(*) from tb_book where user_id is not null", Integer.class));
+    }
+
+    @Test
+    void viewsLoadedForTheCacheUsePrimary() {
+        bookService.takeBook(1001L, 1001L);
+
+        BookView view = bookService.getViewById(1001L);
+
+        assertEquals("primary copy", view.getName());
+        assertEquals(1001L, view.getHolderId());
+        assertEquals(1L, userService.getViewById(1001L).getBookCount());
+    }
+}
@@ -1,11 +1,27 @@
 package com.vertage.library.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vertage.library.dto.BookAvailability;
+import com.vertage.library.dto.BookSearchHit;
+import com.vertage.library.dto.BookView;
+import com.vertage.library.dto.LoanRequest;
+import com.vertage.library.dto.LoanResult;
+import com.vertage.library.dto.LoanStatus;
 import com.vertage.library.entity.Book;
+import com.vertage.library.entity.LoanEvent;
 import com.vertage.library.exception.BookNotFoundException;
 import com.vertage.library.exception.InvalidRequestDataException;
+import com.vertage.library.exception.ServiceUnavailableException;
 import com.vertage.library.exception.UserNotFoundException;
+import com.vertage.library.service.BookAvailabilityService;
+import com.vertage.library.service.BookFeedService;
+import com.vertage.library.service.BookSearchService;
 import com.vertage.library.service.BookService;
+import com.vertage.library.service.GroupCommitService;
+import com.vertage.library.service.LoanHistoryService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -13,92 +29,223 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.Arrays;
+import java.time.Instant;
+import java.util.Collections;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(SpringExtension.class)
 @WebMvcTest(controllers = BookController.class)
 @AutoConfigureMockMvc
+@Import(SimpleMeterRegistry.class)
 public class BookControllerTest {
 
     @MockBean
     private BookService bookService;
 
+    @MockBean
+    private BookAvailabilityService bookAvailabilityService;
+
+    @MockBean
+    private BookSearchService bookSearchService;
+
+    @MockBean
+    private LoanHistoryService loanHistoryService;
+
+    @MockBean
+    private BookFeedService bookFeedService;
+
+    @MockBean
+    private GroupCommitService groupCommitService;
+
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     private ObjectMapper objectMapper = new ObjectMapper();
 
     private Book book;
 
+    private BookView view;
+
     private static final String URI_BOOKS = "/books/";
     private static final String MEDIATYPE_JSON = MediaType.APPLICATION_JSON_VALUE + ";charset=UTF-8";
 
     @BeforeEach
     void setUp() {
         book = new Book(1L, "name", null);
+        view = new BookView(1L, "name", null, null, 0L, null);
     }
 
     @Test
     void constructorNegativeTest() {
-        assertThrows(NullPointerException.class, () -> new BookController(null));
+        assertThrows(NullPointerException.class, () -> new BookController(null, bookAvailabilityService, bookSearchService, loanHistoryService, bookFeedService, groupCommitService));
     }
 
     @Test
     void getAllSuccessCase() throws Exception {
-        Book book2 = new Book(2L, "book2", null);
-        List<Book> expected = Arrays.asList(book, book2);
+        BookView book2 = new BookView(2L, "book2", 3L, "user3", 1L, 0L);
+        List<BookView> expected = Arrays.asList(view, book2);
         String expectedResponse = objectMapper.writeValueAsString(expected);
 
-        when(bookService.getAll()).thenReturn(expected);
+        when(bookService.getAll(null, null, null, null, 50)).thenReturn(expected);
 
         MvcResult mvcResult = mockMvc.perform(get(URI_BOOKS)
                 .contentType(MEDIATYPE_JSON))
-                .andExpect(status().isOk()).andReturn();
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.LINK)).andReturn();
         String actualResponse = mvcResult.getResponse().getContentAsString();
 
-        verify(bookService, times(1)).getAll();
+        verify(bookService, times(1)).getAll(null, null, null, null, 50);
 
         assertEquals(expectedResponse, actualResponse);
     }
 
+    @Test
+    void getAllWhenPageIsFull() throws Exception {
+        BookView book2 = new BookView(2L, "book2", null, null, 0L, null);
+
+        when(bookService.getAll(null, null, null, 1L, 2)).thenReturn(Arrays.asList(view, book2));
+
+        mockMvc.perform(get(URI_BOOKS)
+                .param("after", "1")
+                .param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.LINK, "<http://localhost/books/?after=2&limit=2>; rel=\"next\""));
+
+        verify(bookService, times(1)).getAll(null, null, null, 1L, 2);
+    }
+
+    @Test
+    void getAllFilteredKeepsFilterInNextLink() throws Exception {
+        when(bookService.getAll(false, 3L, null, null, 1)).thenReturn(Collections.singletonList(view));
+
+        mockMvc.perform(get(URI_BOOKS + "?available=false&userId=3&limit=1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.LINK,
+                        "<http://localhost/books/?available=false&userId=3&after=1&limit=1>; rel=\"next\""));
+    }
+
+    @Test
+    void getAllTakenResumesAfterHolderAndId() throws Exception {
+        BookView taken = new BookView(4L, "book4", 3L, "user3", 0L, 0L);
+        when(bookService.getAll(false, null, 2L, 9L, 1)).thenReturn(Collections.singletonList(taken));
+
+        mockMvc.perform(get(URI_BOOKS + "?available=false&afterUserId=2&after=9&limit=1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.LINK,
+                        "<http://localhost/books/?available=false&afterUserId=3&after=4&limit=1>; rel=\"next\""));
+    }
+
+    @Test
+    void getAllByNameWithFilterIsRejected() throws Exception {
+        mockMvc.perform(get(URI_BOOKS + "?sort=name&available=true"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get(URI_BOOKS + "?sort=name&userId=3"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(bookService);
+    }
+
+    @Test
+    void getAllByNameWhenPageIsFull() throws Exception {
+        when(bookService.getAllByName(null, null, 1)).thenReturn(Collections.singletonList(view));
+
+        mockMvc.perform(get(URI_BOOKS + "?sort=name&limit=1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.LINK,
+                        "<http://localhost/books/?sort=name&afterName=name&after=1&limit=1>; rel=\"next\""));
+    }
+
+    @Test
+    void eventsPrefersLastEventIdHeader() throws Exception {
+        when(bookFeedService.subscribe("a-7")).thenReturn(new SseEmitter());
+
+        mockMvc.perform(get(URI_BOOKS + "events?lastEventId=a-3")
+                .header("Last-Event-ID", "a-7"))
+                .andExpect(status().isOk());
+
+        verify(bookFeedService, times(1)).subscribe("a-7");
+    }
+
+    @Test
+    void eventsWhenSubscriberLimitReached() throws Exception {
+        when(bookFeedService.subscribe(null)).thenThrow(new ServiceUnavailableException("Too many subscribers"));
+
+        mockMvc.perform(get(URI_BOOKS + "events"))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    void getBatchPassesIds() throws Exception {
+        when(bookService.getViewsByIds(Arrays.asList(3L, 1L))).thenReturn(Collections.singletonList(view));
+
+        MvcResult mvcResult = mockMvc.perform(get(URI_BOOKS + "batch?ids=3,1"))
+                .andExpect(status().isOk()).andReturn();
+
+        assertEquals(objectMapper.writeValueAsString(Collections.singletonList(view)),
+                mvcResult.getResponse().getContentAsString());
+        verify(bookService, times(1)).getViewsByIds(Arrays.asList(3L, 1L));
+    }
+
     @Test
     void getByIdSuccessCase() throws Exception {
-        String expectedResponse = objectMapper.writeValueAsString(book);
+        String expectedResponse = "{\"id\":1,\"name\":\"name\",\"holderId\":null,\"holderName\":null}";
 
-        when(bookService.getById(1L)).thenReturn(book);
+        when(bookService.getViewById(1L)).thenReturn(view);
 
         MvcResult mvcResult = mockMvc.perform(get(URI_BOOKS + 1L)
                 .contentType(MEDIATYPE_JSON))
                 .andExpect(status().isOk()).andReturn();
         String actualResponse = mvcResult.getResponse().getContentAsString();
 
-        verify(bookService, times(1)).getById(1L);
+        verify(bookService, times(1)).getViewById(1L);
 
         assertEquals(expectedResponse, actualResponse);
     }
 
     @Test
     void getByIdWhenBookNotFound() throws Exception {
-        when(bookService.getById(1L)).thenThrow(BookNotFoundException.class);
+        when(bookService.getViewById(1L)).thenThrow(BookNotFoundException.class);
 
         mockMvc.perform(get(URI_BOOKS + 1L)
                 .contentType(MEDIATYPE_JSON))
                 .andExpect(status().isNotFound()).andReturn();
 
-        verify(bookService, times(1)).getById(1L);
+        verify(bookService, times(1)).getViewById(1L);
+    }
+
+    @Test
+    void getByIdWhenBookNotFoundCountsError() throws Exception {
+        Counter errors = meterRegistry.counter("library.errors", "exception", "BookNotFoundException");
+        double before = errors.count();
+        when(bookService.getViewById(1L)).thenThrow(new BookNotFoundException());
+
+        mockMvc.perform(get(URI_BOOKS + 1L))
+                .andExpect(status().isNotFound());
+
+        assertEquals(before + 1, errors.count());
     }
 
     @Test
@@ -126,11 +273,20 @@ public class BookControllerTest {
         verify(bookService, times(1)).deleteById(1L);
     }
 
+    @Test
+    void deleteAllByIds() throws Exception {
+        when(bookService.deleteByIds(Arrays.asList(1L, 2L, 3L))).thenReturn(2);
+
+        mockMvc.perform(MockMvcRequestBuilders.delete("/books").param("ids", "1,2,3"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("2"));
+    }
+
     @Test
     void updateSuccessCase() throws Exception {
 
         String expectedResponse = objectMapper.writeValueAsString(book);
-        when(bookService.save(book)).thenReturn(book);
+        when(bookService.update(1L, book, null)).thenReturn(book);
 
         MvcResult mvcResult = mockMvc.perform(put(URI_BOOKS + 1L)
                 .contentType(MEDIATYPE_JSON)
@@ -138,11 +294,62 @@ public class BookControllerTest {
                 .andExpect(status().isOk()).andReturn();
         String actualResponse = mvcResult.getResponse().getContentAsString();
 
-        verify(bookService, times(1)).save(book);
+        verify(bookService, times(1)).update(1L, book, null);
 
         assertEquals(expectedResponse, actualResponse);
     }
 
+    @Test
+    void updateWithIfMatchPassesExpectedRevision() throws Exception {
+        when(bookService.update(1L, book, "3")).thenReturn(book);
+
+        mockMvc.perform(put(URI_BOOKS + 1L)
+                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                .contentType(MEDIATYPE_JSON)
+                .content(objectMapper.writeValueAsString(book)))
+                .andExpect(status().isOk());
+
+        verify(bookService, times(1)).update(1L, book, "3");
+    }
+
+    @Test
+    void updateWithWeakIfMatchFailsPrecondition() throws Exception {
+        mockMvc.perform(put(URI_BOOKS + 1L)
+                .header(HttpHeaders.IF_MATCH, "W/\"3\"")
+                .contentType(MEDIATYPE_JSON)
+                .content(objectMapper.writeValueAsString(book)))
+                .andExpect(status().isPreconditionFailed());
+
+        verifyNoInteractions(bookService);
+    }
+
+    @Test
+    void updateWhenChangedConcurrently() throws Exception {
+        when(bookService.update(1L, book, "3"))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Book.class, 1L));
+
+        mockMvc.perform(put(URI_BOOKS + 1L)
+                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                .contentType(MEDIATYPE_JSON)
+                .content(objectMapper.writeValueAsString(book)))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void getByIdAnswersIfNoneMatchWithNotModified() throws Exception {
+        when(bookService.getViewById(1L)).thenReturn(new BookView(1L, "name", 2L, "user2", 4L, 1L));
+
+        mockMvc.perform(get(URI_BOOKS + 1L))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4-1\""));
+        MvcResult notModified = mockMvc.perform(get(URI_BOOKS + 1L)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"4-1\""))
+                .andExpect(status().isNotModified())
+                .andReturn();
+
+        assertEquals("", notModified.getResponse().getContentAsString());
+    }
+
     @Test
     void takeBookByUserSuccessCase() throws Exception {
         mockMvc.perform(patch(URI_BOOKS + 1L + "/take")
@@ -202,4 +409,129 @@ public class BookControllerTest {
 
         verify(bookService, times(1)).returnBook(1L);
     }
+
+    @Test
+    void takeAndReturnGoThroughGroupCommitWhenEnabled() throws Exception {
+        when(groupCommitService.isEnabled()).thenReturn(true);
+
+        mockMvc.perform(patch(URI_BOOKS + 1L + "/take").param("userId", "2"))
+                .andExpect(status().isOk());
+        mockMvc.perform(patch(URI_BOOKS + 1L + "/return"))
+                .andExpect(status().isOk());
+
+        verify(groupCommitService, times(1)).takeBook(1L, 2L);
+        verify(groupCommitService, times(1)).returnBook(1L);
+        verifyNoInteractions(bookService);
+    }
+
+    @Test
+    void takeBooksSuccessCase() throws Exception {
+        List<LoanRequest> requests = Arrays.asList(new LoanRequest(1L, 1L), new LoanRequest(2L, 1L));
+        List<LoanResult> results = Arrays.asList(
+                new LoanResult(1L, 1L, LoanStatus.OK), new LoanResult(2L, 1L, LoanStatus.ALREADY_TAKEN));
+        String expectedResponse = objectMapper.writeValueAsString(results);
+
+        when(bookService.takeBooks(requests)).thenReturn(results);
+
+        MvcResult mvcResult = mockMvc.perform(patch(URI_BOOKS + "take")
+                .contentType(MEDIATYPE_JSON)
+                .content(objectMapper.writeValueAsString(requests)))
+                .andExpect(status().isOk()).andReturn();
+
+        verify(bookService, times(1)).takeBooks(requests);
+
+        assertEquals(expectedResponse, mvcResult.getResponse().getContentAsString());
+    }
+
+    @Test
+    void takeBooksWhenBatchIsInvalid() throws Exception {
+        when(bookService.takeBooks(Collections.emptyList())).thenThrow(new InvalidRequestDataException("empty"));
+
+        mockMvc.perform(patch(URI_BOOKS + "take")
+                .contentType(MEDIATYPE_JSON)
+                .content("[]"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void returnBooksSuccessCase() throws Exception {
+        List<LoanResult> results = Arrays.asList(
+                new LoanResult(1L, null, LoanStatus.OK), new LoanResult(2L, null, LoanStatus.BOOK_NOT_FOUND));
+        String expectedResponse = objectMapper.writeValueAsString(results);
+
+        when(bookService.returnBooks(Arrays.asList(1L, 2L))).thenReturn(results);
+
+        MvcResult mvcResult = mockMvc.perform(patch(URI_BOOKS + "return")
+                .contentType(MEDIATYPE_JSON)
+                .content("[1,2]"))
+                .andExpect(status().isOk()).andReturn();
+
+        verify(bookService, times(1)).returnBooks(Arrays.asList(1L, 2L));
+
+        assertEquals(expectedResponse, mvcResult.getResponse().getContentAsString());
+    }
+
+    @Test
+    void getAvailabilitySuccessCase() throws Exception {
+        BookAvailability availability = new BookAvailability(1L, false, 2L);
+        String expectedResponse = objectMapper.writeValueAsString(availability);
+
+        when(bookAvailabilityService.getAvailability(1L)).thenReturn(availability);
+
+        MvcResult mvcResult = mockMvc.perform(get(URI_BOOKS + 1L + "/availability"))
+                .andExpect(status().isOk()).andReturn();
+
+        assertEquals(expectedResponse, mvcResult.getResponse().getContentAsString());
+    }
+
+    @Test
+    void getAvailabilityWhenBookNotFound() throws Exception {
+        when(bookAvailabilityService.getAvailability(1L)).thenThrow(BookNotFoundException.class);
+
+        mockMvc.perform(get(URI_BOOKS + 1L + "/availability"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void getAvailabilityOfManyBooks() throws Exception {
+        List<BookAvailability> availability = Arrays.asList(
+                new BookAvailability(1L, true, null), new BookAvailability(2L, false, 3L));
+        String expectedResponse = objectMapper.writeValueAsString(availability);
+
+        when(bookAvailabilityService.getAvailability(Arrays.asList(1L, 2L))).thenReturn(availability);
+
+        MvcResult mvcResult = mockMvc.perform(get(URI_BOOKS + "availability").param("ids", "1,2"))
+                .andExpect(status().isOk()).andReturn();
+
+        assertEquals(expectedResponse, mvcResult.getResponse().getContentAsString());
+    }
+
+    @Test
+    void searchWhenPageIsFull() throws Exception {
+        List<BookSearchHit> hits = Collections.singletonList(new BookSearchHit(7L, "War and Peace", 1500));
+        String expectedResponse = objectMapper.writeValueAsString(hits);
+
+        when(bookSearchService.search("war", null, null, 1)).thenReturn(hits);
+
+        MvcResult mvcResult = mockMvc.perform(get(URI_BOOKS + "search?q=war&limit=1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.LINK,
+                        "<http://localhost/books/search?q=war&afterScore=1500&after=7&limit=1>; rel=\"next\""))
+                .andReturn();
+
+        assertEquals(expectedResponse, mvcResult.getResponse().getContentAsString());
+    }
+
+    @Test
+    void getLoansOfBook() throws Exception {
+        LoanEvent taken = new LoanEvent(7L, 1L, 2L, LoanEvent.Type.TAKEN, Instant.parse("2026-10-18T10:00:00Z"));
+        when(loanHistoryService.getByBook(1L, null, 1)).thenReturn(Collections.singletonList(taken));
+
+        mockMvc.perform(get("/books/1/loans?limit=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].type").value("TAKEN"))
+                .andExpect(jsonPath("$[0].userId").value(2))
+                .andExpect(jsonPath("$[0].occurredAt").value("2026-10-18T10:00:00Z"))
+                .andExpect(header().string(HttpHeaders.LINK, "<http://localhost/books/1/loans?after=7&limit=1>; rel=\"next\""));
+    }
 }
@@ -0,0 +1,126 @@
+package com.vertage.library.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vertage.library.dto.DataFormat;
+import com.vertage.library.dto.ImportReport;
+import com.vertage.library.service.CatalogExportService;
+import com.vertage.library.service.CatalogImportService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(SpringExtension.class)
+@WebMvcTest(controllers = CatalogController.class)
+@AutoConfigureMockMvc
+@Import(SimpleMeterRegistry.class)
+public class CatalogControllerTest {
+
+    @MockBean
+    private CatalogImportService catalogImportService;
+
+    @MockBean
+    private CatalogExportService catalogExportService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void constructorNegativeTest() {
+        assertThrows(NullPointerException.class, () -> new CatalogController(null, catalogExportService));
+    }
+
+    @Test
+    void importBooksFromNdjson() throws Exception {
+        ImportReport report = new ImportReport(2, 0, 1, Collections.emptyList());
+
+        when(catalogImportService.importBooks(any(), eq(DataFormat.NDJSON))).thenReturn(report);
+
+        MvcResult mvcResult = mockMvc.perform(post("/books/import")
+                .contentType("application/x-ndjson")
+                .content("{\"name\":\"book1\"}\n{\"name\":\"book2\"}\n"))
+                .andExpect(status().isOk()).andReturn();
+
+        verify(catalogImportService, times(1)).importBooks(any(), eq(DataFormat.NDJSON));
+
+        assertEquals(objectMapper.writeValueAsString(report), mvcResult.getResponse().getContentAsString());
+    }
+
+    @Test
+    void importUsersFromCsv() throws Exception {
+        when(catalogImportService.importUsers(any(), eq(DataFormat.CSV))).thenReturn(new ImportReport());
+
+        mockMvc.perform(post("/users/import")
+                .contentType("text/csv")
+                .content("name\nuser1\n"))
+                .andExpect(status().isOk());
+
+        verify(catalogImportService, times(1)).importUsers(any(), eq(DataFormat.CSV));
+    }
+
+    @Test
+    void importWhenFormatIsNotSupported() throws Exception {
+        mockMvc.perform(post("/books/import")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+                .andExpect(status().isUnsupportedMediaType());
+
+        verifyNoInteractions(catalogImportService);
+    }
+
+    @Test
+    void exportBooksAsGzippedCsv() throws Exception {
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(0);
+            out.write("id,name,user_id,user_name\n1,book1,,\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(catalogExportService).exportBooks(any(), eq(DataFormat.CSV));
+
+        MvcResult mvcResult = mockMvc.perform(get("/books/export").param("format", "csv"))
+                .andExpect(request().asyncStarted()).andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/gzip"))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"books.csv.gz\""));
+
+        byte[] body = mvcResult.getResponse().getContentAsByteArray();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            assertEquals("id,name,user_id,user_name\n1,book1,,\n",
+                    StreamUtils.copyToString(in, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void exportWhenFormatIsNotSupported() throws Exception {
+        mockMvc.perform(get("/books/export").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(catalogExportService);
+    }
+}
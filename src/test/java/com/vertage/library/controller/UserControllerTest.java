@@ -1,37 +1,54 @@
 package com.vertage.library.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vertage.library.dto.UserView;
+import com.vertage.library.entity.LoanEvent;
 import com.vertage.library.entity.User;
+import com.vertage.library.exception.PreconditionFailedException;
+import com.vertage.library.exception.UserHoldsBooksException;
 import com.vertage.library.exception.UserNotFoundException;
+import com.vertage.library.service.LoanHistoryService;
 import com.vertage.library.service.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import java.time.Instant;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 
 @ExtendWith(SpringExtension.class)
 @WebMvcTest(controllers = UserController.class)
 @AutoConfigureMockMvc
+@Import(SimpleMeterRegistry.class)
 public class UserControllerTest {
 
     @MockBean
     private UserService userService;
 
+    @MockBean
+    private LoanHistoryService loanHistoryService;
+
     private ObjectMapper objectMapper = new ObjectMapper();
 
     @Autowired
@@ -43,51 +60,78 @@ public class UserControllerTest {
 
     @Test
     void getAllSuccessCase() throws Exception {
-        User user = new User(1L, "user1", null);
-        User user2 = new User(2L, "user2", null);
-        List<User> users = Arrays.asList(user, user2);
+        UserView user = new UserView(1L, "user1", 2L, 0L);
+        UserView user2 = new UserView(2L, "user2", 0L, 0L);
+        List<UserView> users = Arrays.asList(user, user2);
 
         String jsonUsers = objectMapper.writeValueAsString(users);
 
-        when(userService.getAll()).thenReturn(users);
+        when(userService.getAll(null, 50)).thenReturn(users);
 
         MvcResult mvcResult = mockMvc.perform(get(URI_USERS)
                 .contentType(MEDIATYPE_JSON))
                 .andExpect(status().isOk())
                 .andReturn();
 
-        verify(userService, times(1)).getAll();
+        verify(userService, times(1)).getAll(null, 50);
         String responseAsString = mvcResult.getResponse().getContentAsString();
 
         assertEquals(jsonUsers, responseAsString);
     }
 
+    @Test
+    void getAllWhenPageIsFull() throws Exception {
+        UserView user = new UserView(3L, "user3", 0L, 0L);
+
+        when(userService.getAll(2L, 1)).thenReturn(Arrays.asList(user));
+
+        mockMvc.perform(get(URI_USERS)
+                .param("after", "2")
+                .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.LINK, "<http://localhost/users/?after=3&limit=1>; rel=\"next\""));
+
+        verify(userService, times(1)).getAll(2L, 1);
+    }
+
     @Test
     void getByIdSuccessCase() throws Exception {
-        User user = new User(1L, "user1", null);
-        String expectedUser = objectMapper.writeValueAsString(user);
+        UserView user = new UserView(1L, "user1", 1L, 0L);
+        String expectedUser = "{\"id\":1,\"name\":\"user1\",\"bookCount\":1}";
 
-        when(userService.getById(user.getId())).thenReturn(user);
+        when(userService.getViewById(user.getId())).thenReturn(user);
 
         MvcResult mvcResult = mockMvc.perform(get(URI_USERS + user.getId())
                 .contentType(MEDIATYPE_JSON))
-                .andExpect(status().isOk()).andReturn();
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0-1\"")).andReturn();
         String responseAsString = mvcResult.getResponse().getContentAsString();
 
-        verify(userService, times(1)).getById(user.getId());
+        verify(userService, times(1)).getViewById(user.getId());
 
         assertEquals(expectedUser, responseAsString);
     }
 
     @Test
     void getByIdWhenUserNotFound() throws Exception {
-        when(userService.getById(1L)).thenThrow(UserNotFoundException.class);
+        when(userService.getViewById(1L)).thenThrow(UserNotFoundException.class);
 
         mockMvc.perform(get(URI_USERS + 1L)
                 .contentType(MEDIATYPE_JSON))
                 .andExpect(status().isNotFound()).andReturn();
+    }
 
-        verify(userService, times(1)).getById(1L);
+    @Test
+    void getByIdWhenNotModified() throws Exception {
+        when(userService.getViewById(1L)).thenReturn(new UserView(1L, "user1", 5L, 3L));
+
+        MvcResult notModified = mockMvc.perform(get(URI_USERS + 1L)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"3-5\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3-5\""))
+                .andReturn();
+
+        assertEquals("", notModified.getResponse().getContentAsString());
     }
 
     @Test
@@ -117,12 +161,38 @@ public class UserControllerTest {
         verify(userService, times(1)).deleteById(1L);
     }
 
+    @Test
+    void deleteReleasingBooks() throws Exception {
+        mockMvc.perform(delete(URI_USERS + 1L).param("releaseBooks", "true"))
+                .andExpect(status().isOk());
+
+        verify(userService, times(1)).releaseBooksAndDeleteById(1L);
+        verify(userService, never()).deleteById(any());
+    }
+
+    @Test
+    void deleteAllByIds() throws Exception {
+        when(userService.deleteByIds(Arrays.asList(1L, 2L), true)).thenReturn(2);
+
+        mockMvc.perform(delete("/users").param("ids", "1,2").param("releaseBooks", "true"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("2"));
+    }
+
+    @Test
+    void deleteUserHoldingBooksIsConflict() throws Exception {
+        doThrow(new UserHoldsBooksException()).when(userService).deleteById(1L);
+
+        mockMvc.perform(delete(URI_USERS + 1L))
+                .andExpect(status().isConflict());
+    }
+
     @Test
     void updateSuccessCase() throws Exception {
         User user = new User(1L, "user1", null);
         String expectedUser = objectMapper.writeValueAsString(user);
 
-        when(userService.save(user)).thenReturn(user);
+        when(userService.update(1L, user, null)).thenReturn(user);
 
         MvcResult mvcResult = mockMvc.perform(put(URI_USERS + 1L)
                 .contentType(MEDIATYPE_JSON)
@@ -131,8 +201,32 @@ public class UserControllerTest {
                 .andReturn();
         String userInResponse = mvcResult.getResponse().getContentAsString();
 
-        verify(userService, times(1)).save(user);
+        verify(userService, times(1)).update(1L, user, null);
 
         assertEquals(expectedUser, userInResponse);
     }
+
+    @Test
+    void updateWhenRevisionChanged() throws Exception {
+        User user = new User(1L, "user1", null);
+        when(userService.update(1L, user, "3-5a")).thenThrow(PreconditionFailedException.class);
+
+        mockMvc.perform(put(URI_USERS + 1L)
+                .header(HttpHeaders.IF_MATCH, "\"3-5a\"")
+                .contentType(MEDIATYPE_JSON)
+                .content(objectMapper.writeValueAsString(user)))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void getLoansOfUser() throws Exception {
+        LoanEvent returned = new LoanEvent(8L, 1L, 2L, LoanEvent.Type.RETURNED, Instant.parse("2026-10-18T11:00:00Z"));
+        when(loanHistoryService.getByUser(2L, 7L, 50)).thenReturn(Collections.singletonList(returned));
+
+        mockMvc.perform(get(URI_USERS + "2/loans?after=7"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].type").value("RETURNED"))
+                .andExpect(jsonPath("$[0].bookId").value(1))
+                .andExpect(header().doesNotExist(HttpHeaders.LINK));
+    }
 }
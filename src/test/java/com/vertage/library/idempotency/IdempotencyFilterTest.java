@@ -0,0 +1,178 @@
+package com.vertage.library.idempotency;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdempotencyFilterTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private int status;
+
+    private IdempotencyStore store;
+
+    private IdempotencyFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        status = 200;
+        store = new InMemoryIdempotencyStore(100, Duration.ofHours(1), Duration.ofMinutes(1));
+        filter = new IdempotencyFilter(store, 16, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void retryIsReplayedWithoutRunningAgain() throws Exception {
+        MockHttpServletResponse first = perform(request("POST", "/books", "key-1", "{\"name\":\"a\"}"));
+        MockHttpServletResponse retry = perform(request("POST", "/books", "key-1", "{\"name\":\"a\"}"));
+
+        assertEquals(1, calls.get());
+        assertEquals(200, retry.getStatus());
+        assertEquals("{\"id\":1,\"echo\":\"{\\\"name\\\":\\\"a\\\"}\"}", first.getContentAsString());
+        assertEquals(first.getContentAsString(), retry.getContentAsString());
+        assertEquals("application/json", retry.getContentType());
+        assertEquals("true", retry.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertNull(first.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+    }
+
+    @Test
+    void clientErrorsAreReplayedToo() throws Exception {
+        status = 400;
+
+        perform(request("PATCH", "/books/1/take", "key-1", ""));
+        MockHttpServletResponse retry = perform(request("PATCH", "/books/1/take", "key-1", ""));
+
+        assertEquals(1, calls.get());
+        assertEquals(400, retry.getStatus());
+    }
+
+    @Test
+    void serverErrorsAreNotStored() throws Exception {
+        status = 503;
+
+        perform(request("PATCH", "/books/1/take", "key-1", ""));
+        status = 200;
+        MockHttpServletResponse retry = perform(request("PATCH", "/books/1/take", "key-1", ""));
+
+        assertEquals(2, calls.get());
+        assertEquals(200, retry.getStatus());
+    }
+
+    @Test
+    void keyReusedForAnotherRequestIsRejected() throws Exception {
+        perform(request("POST", "/books", "key-1", "{\"name\":\"a\"}"));
+
+        assertEquals(422, perform(request("POST", "/books", "key-1", "{\"name\":\"b\"}")).getStatus());
+        assertEquals(422, perform(request("PATCH", "/books/1/take", "key-1", "")).getStatus());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void retryWhileFirstRunsIsConflict() throws Exception {
+        MockHttpServletRequest request = request("POST", "/books", "key-1", "{}");
+        store.reserve("key-1", "elsewhere");
+
+        MockHttpServletResponse response = perform(request);
+
+        assertEquals(409, response.getStatus());
+        assertEquals("1", response.getHeader("Retry-After"));
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    void requestsWithoutKeyOrWithSafeMethodPassThrough() throws Exception {
+        perform(request("POST", "/books", null, "{}"));
+        perform(request("POST", "/books", null, "{}"));
+        perform(request("GET", "/books/1", "key-1", ""));
+        perform(request("GET", "/books/1", "key-1", ""));
+
+        assertEquals(4, calls.get());
+    }
+
+    @Test
+    void oversizedBodyIsRejected() throws Exception {
+        assertEquals(413, perform(request("POST", "/books", "key-1", "{\"name\":\"too long a name\"}")).getStatus());
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    void invalidKeyIsRejected() throws Exception {
+        assertEquals(400, perform(request("POST", "/books", "", "{}")).getStatus());
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    void bufferedBodyCanBeReadAsynchronously() throws Exception {
+        StringBuilder body = new StringBuilder();
+        AtomicInteger allDataRead = new AtomicInteger();
+
+        filter.doFilter(request("POST", "/books", "key-1", "{\"name\":\"a\"}"), new MockHttpServletResponse(),
+                new MockFilterChain(new HttpServlet() {
+                    @Override
+                    protected void service(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                        ServletInputStream in = req.getInputStream();
+                        in.setReadListener(new ReadListener() {
+                            @Override
+                            public void onDataAvailable() throws IOException {
+                                while (in.isReady() && !in.isFinished()) {
+                                    body.append((char) in.read());
+                                }
+                            }
+
+                            @Override
+                            public void onAllDataRead() {
+                                allDataRead.incrementAndGet();
+                            }
+
+                            @Override
+                            public void onError(Throwable t) {
+                                fail(t);
+                            }
+                        });
+                    }
+                }));
+
+        assertEquals("{\"name\":\"a\"}", body.toString());
+        assertEquals(1, allDataRead.get());
+    }
+
+    private static MockHttpServletRequest request(String method, String uri, String key, String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        if (key != null) {
+            request.addHeader(IdempotencyFilter.HEADER, key);
+        }
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    private MockHttpServletResponse perform(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                calls.incrementAndGet();
+                String body = StreamUtils.copyToString(req.getInputStream(), StandardCharsets.UTF_8);
+                resp.setStatus(status);
+                resp.setContentType("application/json");
+                resp.getWriter().write("{\"id\":1,\"echo\":\"" + body.replace("\"", "\\\"") + "\"}");
+            }
+        }));
+        return response;
+    }
+}
@@ -0,0 +1,82 @@
+package com.vertage.library.idempotency;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+public class JdbcIdempotencyStoreTest {
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    private JdbcIdempotencyStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new JdbcIdempotencyStore(jdbcTemplate, Duration.ofHours(1), Duration.ofMinutes(1));
+    }
+
+    @Test
+    void reserveCompleteAndReplay() {
+        assertNull(store.reserve("key-1", "fp"));
+        assertTrue(store.reserve("key-1", "fp").isInProgress());
+
+        store.complete("key-1", new IdempotencyRecord("fp", 201, "application/json",
+                "{\"id\":1}".getBytes(StandardCharsets.UTF_8)));
+
+        IdempotencyRecord stored = store.reserve("key-1", "fp");
+        assertEquals(201, stored.getStatus());
+        assertEquals("application/json", stored.getContentType());
+        assertEquals("{\"id\":1}", new String(stored.getBody(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void releaseFreesReservationOnly() {
+        store.reserve("key-1", "fp");
+        store.release("key-1");
+        assertNull(store.reserve("key-1", "fp"));
+
+        store.complete("key-1", new IdempotencyRecord("fp", 200, null, new byte[0]));
+        store.release("key-1");
+        assertEquals(200, store.reserve("key-1", "fp").getStatus());
+    }
+
+    @Test
+    void staleReservationIsTakenOver() {
+        store.reserve("key-1", "old");
+        age("key-1", Duration.ofMinutes(2));
+
+        assertNull(store.reserve("key-1", "new"));
+    }
+
+    @Test
+    void purgeDeletesExpiredResponses() {
+        store.reserve("key-1", "fp");
+        store.complete("key-1", new IdempotencyRecord("fp", 200, null, new byte[0]));
+        store.reserve("key-2", "fp");
+        age("key-1", Duration.ofHours(2));
+
+        store.purge();
+
+        assertNull(store.reserve("key-1", "fp"));
+        assertTrue(store.reserve("key-2", "fp").isInProgress());
+    }
+
+    private void age(String key, Duration age) {
+        jdbcTemplate.update("UPDATE tb_idempotency_key SET created_at = :createdAt WHERE idempotency_key = :key",
+                new MapSqlParameterSource()
+                        .addValue("key", key)
+                        .addValue("createdAt", Timestamp.from(Instant.now().minus(age))));
+    }
+}
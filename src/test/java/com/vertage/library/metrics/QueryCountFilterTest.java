@@ -0,0 +1,36 @@
+package com.vertage.library.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class QueryCountFilterTest {
+
+    private final QueryCounter queryCounter = new QueryCounter();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final QueryCountFilter filter = new QueryCountFilter(queryCounter, meterRegistry);
+
+    @Test
+    void recordsStatementsOfEachRequest() throws Exception {
+        queryCounter.inspect("select 1");
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/books/1");
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            req.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/books/{id}");
+            assertEquals("select 2", queryCounter.inspect("select 2"));
+            queryCounter.inspect("select 3");
+        });
+
+        DistributionSummary summary = meterRegistry.get(QueryCountFilter.METRIC)
+                .tag("method", "GET").tag("uri", "/books/{id}").summary();
+        assertEquals(1, summary.count());
+        assertEquals(2.0, summary.totalAmount());
+    }
+}
@@ -0,0 +1,144 @@
+package com.vertage.library.perf;
+
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Runs closed-loop workers against the HTTP API: each worker picks an operation from the mix,
+ * sends it, waits for the answer and records its latency, until the run time is over.
+ * Operations without a suffix are on books.
+ */
+class LoadDriver {
+
+    enum Operation {
+        READ,
+        LIST,
+        TAKE,
+        RETURN,
+        READ_USER,
+        LIST_USERS,
+        CREATE_USER
+    }
+
+    private final RestTemplate restTemplate;
+
+    private final String baseUrl;
+
+    LoadDriver(RestTemplate restTemplate, String baseUrl) {
+        this.restTemplate = restTemplate;
+        this.baseUrl = baseUrl;
+    }
+
+    /**
+     * Parses a mix such as {@code read:70,take:15,return:10,read_user:5}; weights are relative.
+     */
+    static Map<Operation, Integer> mix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            weights.put(Operation.valueOf(parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()));
+        }
+        return weights;
+    }
+
+    /**
+     * @param warmup time spent sending the same workload before latencies are recorded
+     */
+    LoadReport run(Map<Operation, Integer> mix, long[] bookIds, long[] userIds, int concurrency,
+                   Duration warmup, Duration duration) throws InterruptedException, ExecutionException {
+        Operation[] wheel = wheel(mix);
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        try {
+            long recordFrom = System.nanoTime() + warmup.toNanos();
+            long stopAt = recordFrom + duration.toNanos();
+            List<Future<LoadReport>> results = new ArrayList<>(concurrency);
+            for (int i = 0; i < concurrency; i++) {
+                results.add(workers.submit(() -> work(wheel, bookIds, userIds, recordFrom, stopAt)));
+            }
+            LoadReport report = new LoadReport();
+            for (Future<LoadReport> result : results) {
+                report.merge(result.get());
+            }
+            return report;
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private LoadReport work(Operation[] wheel, long[] bookIds, long[] userIds, long recordFrom, long stopAt) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        LoadReport report = new LoadReport();
+        long now;
+        while ((now = System.nanoTime()) < stopAt) {
+            Operation operation = wheel[random.nextInt(wheel.length)];
+            long bookId = bookIds[random.nextInt(bookIds.length)];
+            long userId = userIds[random.nextInt(userIds.length)];
+            int status = send(operation, bookId, userId);
+            long latency = System.nanoTime() - now;
+            if (now >= recordFrom) {
+                report.record(operation, latency, status);
+            }
+        }
+        return report;
+    }
+
+    private int send(Operation operation, long bookId, long userId) {
+        try {
+            switch (operation) {
+                case READ:
+                    return exchange(HttpMethod.GET, "/books/" + bookId);
+                case LIST:
+                    return exchange(HttpMethod.GET, "/books?after=" + bookId + "&limit=50");
+                case TAKE:
+                    return exchange(HttpMethod.PATCH, "/books/" + bookId + "/take?userId=" + userId);
+                case RETURN:
+                    return exchange(HttpMethod.PATCH, "/books/" + bookId + "/return");
+                case READ_USER:
+                    return exchange(HttpMethod.GET, "/users/" + userId);
+                case LIST_USERS:
+                    return exchange(HttpMethod.GET, "/users?after=" + userId + "&limit=50");
+                case CREATE_USER:
+                    return exchange(HttpMethod.POST, "/users", "{\"name\":\"perf user " + bookId + "\"}");
+                default:
+                    throw new IllegalArgumentException(operation.name());
+            }
+        } catch (ResourceAccessException e) {
+            return 0;
+        }
+    }
+
+    private int exchange(HttpMethod method, String path) {
+        return restTemplate.exchange(baseUrl + path, method, null, byte[].class).getStatusCodeValue();
+    }
+
+    private int exchange(HttpMethod method, String path, String json) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return restTemplate.exchange(baseUrl + path, method, new HttpEntity<>(json, headers), byte[].class)
+                .getStatusCodeValue();
+    }
+
+    private static Operation[] wheel(Map<Operation, Integer> mix) {
+        List<Operation> wheel = new ArrayList<>();
+        mix.forEach((operation, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                wheel.add(operation);
+            }
+        });
+        if (wheel.isEmpty()) {
+            throw new IllegalArgumentException("The mix has no operations");
+        }
+        return wheel.toArray(new Operation[0]);
+    }
+}
@@ -0,0 +1,95 @@
+package com.vertage.library.perf;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Latencies and outcomes per operation, recorded by one worker thread and merged at the end of a run.
+ */
+class LoadReport {
+
+    private final Map<LoadDriver.Operation, Samples> samples = new EnumMap<>(LoadDriver.Operation.class);
+
+    void record(LoadDriver.Operation operation, long nanos, int status) {
+        samples.computeIfAbsent(operation, key -> new Samples()).add(nanos, status);
+    }
+
+    void merge(LoadReport other) {
+        other.samples.forEach((operation, theirs) ->
+                samples.computeIfAbsent(operation, key -> new Samples()).addAll(theirs));
+    }
+
+    long serverErrors() {
+        return samples.values().stream().mapToLong(s -> s.serverErrors).sum();
+    }
+
+    String format(String scenario, Duration elapsed) {
+        StringBuilder out = new StringBuilder(String.format("%n%s (%d s)%n", scenario, elapsed.getSeconds()));
+        out.append(String.format("%-11s %9s %9s %9s %7s %9s %8s %8s %8s %8s %8s%n",
+                "op", "count", "ok", "rejected", "errors", "ops/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+        samples.forEach((operation, s) -> {
+            long[] sorted = Arrays.copyOf(s.nanos, s.count);
+            Arrays.sort(sorted);
+            out.append(String.format("%-11s %9d %9d %9d %7d %9.1f %8.2f %8.2f %8.2f %8.2f %8.2f%n",
+                    operation.name().toLowerCase(), s.count, s.ok, s.rejected, s.serverErrors,
+                    s.count * 1000.0 / Math.max(1, elapsed.toMillis()),
+                    millis(sorted, 0.50), millis(sorted, 0.90), millis(sorted, 0.99), millis(sorted, 0.999),
+                    millis(sorted, 1.0)));
+        });
+        return out.toString();
+    }
+
+    private static double millis(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    private static final class Samples {
+
+        private long[] nanos = new long[1024];
+
+        private int count;
+
+        private long ok;
+
+        /**
+         * 4xx answers, e.g. a take of a book that is already taken.
+         */
+        private long rejected;
+
+        /**
+         * 5xx answers and transport failures.
+         */
+        private long serverErrors;
+
+        void add(long latency, int status) {
+            if (count == nanos.length) {
+                nanos = Arrays.copyOf(nanos, count << 1);
+            }
+            nanos[count++] = latency;
+            if (status >= 200 && status < 300) {
+                ok++;
+            } else if (status >= 400 && status < 500) {
+                rejected++;
+            } else {
+                serverErrors++;
+            }
+        }
+
+        void addAll(Samples other) {
+            if (count + other.count > nanos.length) {
+                nanos = Arrays.copyOf(nanos, count + other.count);
+            }
+            System.arraycopy(other.nanos, 0, nanos, count, other.count);
+            count += other.count;
+            ok += other.ok;
+            rejected += other.rejected;
+            serverErrors += other.serverErrors;
+        }
+    }
+}
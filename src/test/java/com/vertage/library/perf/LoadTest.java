@@ -0,0 +1,129 @@
+package com.vertage.library.perf;
+
+import com.vertage.library.service.BookService;
+import com.vertage.library.service.CatalogImportService;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.client.ResponseErrorHandler;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Drives the real controllers over HTTP with a configurable mix and concurrency; excluded from the
+ * default build, run with {@code mvn -Pperf test}. Workload settings are the {@code perf.*} properties.
+ */
+@Slf4j
+@Tag("perf")
+@ActiveProfiles("perf")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class LoadTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private CatalogImportService catalogImportService;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${perf.users}")
+    private int users;
+
+    @Value("${perf.books}")
+    private int books;
+
+    @Value("${perf.taken-ratio}")
+    private double takenRatio;
+
+    @Value("${perf.concurrency}")
+    private int concurrency;
+
+    @Value("${perf.warmup}")
+    private Duration warmup;
+
+    @Value("${perf.duration}")
+    private Duration duration;
+
+    @Value("${perf.mix}")
+    private String mix;
+
+    @Value("${perf.hot-books}")
+    private int hotBooks;
+
+    @Value("${perf.hot-mix}")
+    private String hotMix;
+
+    private PerfDataGenerator.Dataset dataset;
+
+    private LoadDriver driver;
+
+    @BeforeAll
+    void generateData() {
+        long started = System.nanoTime();
+        dataset = new PerfDataGenerator(catalogImportService, bookService, jdbcTemplate, 42L)
+                .generate(users, books, takenRatio);
+        log.info("Generated {} users and {} books in {} ms", dataset.userIds.length, dataset.bookIds.length,
+                Duration.ofNanos(System.nanoTime() - started).toMillis());
+        driver = new LoadDriver(restTemplate(), "http://localhost:" + port);
+    }
+
+    @Test
+    void uniformMix() throws Exception {
+        run("Uniform mix " + mix, LoadDriver.mix(mix), dataset.bookIds);
+    }
+
+    /**
+     * Every worker fights over the same few books, so most takes and returns collide on the same rows.
+     */
+    @Test
+    void hotBookContention() throws Exception {
+        run("Hot books (" + hotBooks + ") " + hotMix, LoadDriver.mix(hotMix),
+                Arrays.copyOf(dataset.bookIds, Math.min(hotBooks, dataset.bookIds.length)));
+    }
+
+    private void run(String scenario, Map<LoadDriver.Operation, Integer> operations, long[] bookIds)
+            throws Exception {
+        LoadReport report = driver.run(operations, bookIds, dataset.userIds, concurrency, warmup, duration);
+        log.info(report.format(scenario + ", " + concurrency + " workers", duration));
+        assertEquals(0, report.serverErrors(), "Server errors or failed requests");
+    }
+
+    private RestTemplate restTemplate() {
+        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(
+                HttpClients.custom().setMaxConnTotal(concurrency).setMaxConnPerRoute(concurrency).build());
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        restTemplate.setErrorHandler(new ResponseErrorHandler() {
+            @Override
+            public boolean hasError(ClientHttpResponse response) {
+                return false;
+            }
+
+            @Override
+            public void handleError(ClientHttpResponse response) {
+            }
+        });
+        return restTemplate;
+    }
+}
@@ -0,0 +1,94 @@
+package com.vertage.library.perf;
+
+import com.vertage.library.dto.DataFormat;
+import com.vertage.library.dto.LoanRequest;
+import com.vertage.library.service.BookService;
+import com.vertage.library.service.CatalogImportService;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Fills the catalog with synthetic users and books through the import and batch loan services,
+ * so the availability and search indexes see the data exactly as they would in production.
+ */
+class PerfDataGenerator {
+
+    private static final String[] SYLLABLES = {"an", "bel", "cor", "dra", "el", "fin", "gar", "hol", "is", "jor",
+            "ka", "lin", "mor", "nes", "or", "pra", "qui", "ros", "sil", "tor", "ul", "ver", "wen", "xa", "yor", "zel"};
+    private static final int LOAN_BATCH = 1000;
+
+    private final CatalogImportService importService;
+
+    private final BookService bookService;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Random random;
+
+    PerfDataGenerator(CatalogImportService importService, BookService bookService, JdbcTemplate jdbcTemplate, long seed) {
+        this.importService = importService;
+        this.bookService = bookService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.random = new Random(seed);
+    }
+
+    Dataset generate(int users, int books, double takenRatio) {
+        importService.importUsers(names(users, 2), DataFormat.CSV);
+        importService.importBooks(names(books, 3), DataFormat.CSV);
+        long[] userIds = ids("tb_user");
+        long[] bookIds = ids("tb_book");
+        List<LoanRequest> loans = new ArrayList<>(LOAN_BATCH);
+        for (long bookId : bookIds) {
+            if (random.nextDouble() < takenRatio) {
+                loans.add(new LoanRequest(bookId, userIds[random.nextInt(userIds.length)]));
+            }
+            if (loans.size() == LOAN_BATCH) {
+                bookService.takeBooks(loans);
+                loans.clear();
+            }
+        }
+        if (!loans.isEmpty()) {
+            bookService.takeBooks(loans);
+        }
+        return new Dataset(userIds, bookIds);
+    }
+
+    private ByteArrayInputStream names(int count, int words) {
+        StringBuilder csv = new StringBuilder("name\n");
+        for (int i = 0; i < count; i++) {
+            for (int word = 0; word < words; word++) {
+                if (word > 0) {
+                    csv.append(' ');
+                }
+                int syllables = 2 + random.nextInt(2);
+                for (int j = 0; j < syllables; j++) {
+                    csv.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+                }
+            }
+            csv.append('\n');
+        }
+        return new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private long[] ids(String table) {
+        return jdbcTemplate.queryForList("SELECT id FROM " + table + " ORDER BY id", Long.class)
+                .stream().mapToLong(Long::longValue).toArray();
+    }
+
+    static final class Dataset {
+
+        final long[] userIds;
+
+        final long[] bookIds;
+
+        Dataset(long[] userIds, long[] bookIds) {
+            this.userIds = userIds;
+            this.bookIds = bookIds;
+        }
+    }
+}
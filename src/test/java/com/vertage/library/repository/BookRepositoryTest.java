@@ -0,0 +1,222 @@
+package com.vertage.library.repository;
+
+import com.vertage.library.dto.BookView;
+import com.vertage.library.dto.LoanRequest;
+import com.vertage.library.entity.Book;
+import com.vertage.library.entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+public class BookRepositoryTest {
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private Long bookId;
+
+    private Long userId;
+
+    @BeforeEach
+    void setUp() {
+        userId = entityManager.persistAndGetId(new User(null, "user", null), Long.class);
+        bookId = entityManager.persistAndGetId(new Book(null, "book", null), Long.class);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void takeBookSuccessCase() {
+        assertEquals(1, bookRepository.takeBook(bookId, userId));
+
+        assertEquals(userId, entityManager.find(Book.class, bookId).getUser().getId());
+    }
+
+    @Test
+    void takeAndReturnBumpVersion() {
+        long version = entityManager.find(Book.class, bookId).getVersion();
+        entityManager.clear();
+
+        bookRepository.takeBook(bookId, userId);
+        bookRepository.returnBook(bookId);
+
+        assertEquals(version + 2, entityManager.find(Book.class, bookId).getVersion());
+    }
+
+    @Test
+    void takeBookWhenBookTaken() {
+        assertEquals(1, bookRepository.takeBook(bookId, userId));
+
+        assertEquals(0, bookRepository.takeBook(bookId, userId));
+    }
+
+    @Test
+    void takeBookWhenUserNotFound() {
+        assertEquals(0, bookRepository.takeBook(bookId, userId + 1));
+
+        assertNull(entityManager.find(Book.class, bookId).getUser());
+    }
+
+    @Test
+    void releaseBooksHeldBySuccessCase() {
+        bookRepository.takeBook(bookId, userId);
+
+        assertEquals(Collections.singletonMap(bookId, userId), bookRepository.lockBooksHeldBy(Collections.singleton(userId)));
+        assertEquals(1, bookRepository.releaseBooksHeldBy(Collections.singleton(userId)));
+        assertNull(entityManager.find(Book.class, bookId).getUser());
+    }
+
+    @Test
+    void lockHoldersReadsHolderOfEveryBookFound() {
+        bookRepository.takeBook(bookId, userId);
+
+        Map<Long, Long> holders = bookRepository.lockHolders(Arrays.asList(bookId, bookId + 1));
+
+        assertEquals(Collections.singletonMap(bookId, userId), holders);
+        bookRepository.returnBook(bookId);
+        assertTrue(bookRepository.lockHolders(Collections.singletonList(bookId)).containsKey(bookId));
+        assertNull(bookRepository.lockHolders(Collections.singletonList(bookId)).get(bookId));
+    }
+
+    @Test
+    void deleteByIdInSkipsUnknownIds() {
+        List<Long> ids = Arrays.asList(bookId, bookId + 1);
+
+        assertEquals(Collections.singletonList(bookId), bookRepository.lockIdsByIdIn(ids));
+        assertEquals(1, bookRepository.deleteByIdIn(ids));
+        assertNull(entityManager.find(Book.class, bookId));
+    }
+
+    @Test
+    void takeBookWhenBookNotFound() {
+        assertEquals(0, bookRepository.takeBook(bookId + 1, userId));
+    }
+
+    @Test
+    void returnBookSuccessCase() {
+        bookRepository.takeBook(bookId, userId);
+
+        assertEquals(1, bookRepository.returnBook(bookId));
+
+        assertNull(entityManager.find(Book.class, bookId).getUser());
+    }
+
+    @Test
+    void returnBookWhenBookNotFound() {
+        assertEquals(0, bookRepository.returnBook(bookId + 1));
+    }
+
+    @Test
+    void takeBooksReportsAffectedRowsPerItem() {
+        Long otherBookId = entityManager.persistAndGetId(new Book(null, "other", null), Long.class);
+        entityManager.flush();
+
+        int[] updated = bookRepository.takeBooks(Arrays.asList(
+                new LoanRequest(bookId, userId),
+                new LoanRequest(bookId, userId),
+                new LoanRequest(otherBookId, userId + 1),
+                new LoanRequest(otherBookId, userId)));
+
+        assertArrayEquals(new int[]{1, 0, 0, 1}, updated);
+    }
+
+    @Test
+    void returnBooksReportsAffectedRowsPerItem() {
+        bookRepository.takeBook(bookId, userId);
+
+        assertArrayEquals(new int[]{1, 0}, bookRepository.returnBooks(Arrays.asList(bookId, bookId + 1)));
+
+        assertNull(entityManager.find(Book.class, bookId).getUser());
+    }
+
+    @Test
+    void findPagesFilteredByHolder() {
+        Long otherBookId = entityManager.persistAndGetId(new Book(null, "other", null), Long.class);
+        entityManager.flush();
+        bookRepository.takeBook(otherBookId, userId);
+
+        assertEquals(Collections.singletonList(bookId), ids(bookRepository
+                .findAvailableViewsAfter(0L, PageRequest.of(0, 10))));
+        assertEquals(Collections.singletonList(otherBookId), ids(bookRepository
+                .findTakenViewsAfter(0L, 0L, PageRequest.of(0, 10))));
+        assertEquals(Collections.singletonList(otherBookId), ids(bookRepository
+                .findViewsByHolderAfter(userId, 0L, PageRequest.of(0, 10))));
+        assertEquals(Collections.emptyList(), bookRepository
+                .findViewsByHolderAfter(userId, otherBookId, PageRequest.of(0, 10)));
+    }
+
+    @Test
+    void findTakenPagesOrderedByHolderThenId() {
+        Long otherUserId = entityManager.persistAndGetId(new User(null, "other", null), Long.class);
+        Long secondBookId = entityManager.persistAndGetId(new Book(null, "second", null), Long.class);
+        Long thirdBookId = entityManager.persistAndGetId(new Book(null, "third", null), Long.class);
+        entityManager.flush();
+        bookRepository.takeBook(bookId, otherUserId);
+        bookRepository.takeBook(secondBookId, userId);
+        bookRepository.takeBook(thirdBookId, userId);
+
+        List<BookView> first = bookRepository.findTakenViewsAfter(0L, 0L, PageRequest.of(0, 2));
+        BookView last = first.get(1);
+
+        assertEquals(Arrays.asList(secondBookId, thirdBookId), ids(first));
+        assertEquals(Collections.singletonList(bookId), ids(bookRepository
+                .findTakenViewsAfter(last.getHolderId(), last.getId(), PageRequest.of(0, 2))));
+    }
+
+    @Test
+    void findPageOrderByNameResumesAfterCursor() {
+        Long firstId = entityManager.persistAndGetId(new Book(null, "alpha", null), Long.class);
+        Long secondId = entityManager.persistAndGetId(new Book(null, "alpha", null), Long.class);
+        entityManager.flush();
+
+        assertEquals(Arrays.asList(firstId, secondId), ids(bookRepository
+                .findViewsOrderByName("", 0L, PageRequest.of(0, 2))));
+        assertEquals(Arrays.asList(secondId, bookId), ids(bookRepository
+                .findViewsOrderByName("alpha", firstId, PageRequest.of(0, 2))));
+    }
+
+    @Test
+    void findViewsByIdInSkipsUnknownIds() {
+        Long otherId = entityManager.persistAndGetId(new Book(null, "other", null), Long.class);
+
+        List<BookView> views = bookRepository.findViewsByIdIn(Arrays.asList(otherId, bookId, -1L));
+
+        assertEquals(new HashSet<>(Arrays.asList(bookId, otherId)), new HashSet<>(ids(views)));
+    }
+
+    @Test
+    void findViewByIdCarriesHolder() {
+        bookRepository.takeBook(bookId, userId);
+
+        BookView view = bookRepository.findViewById(bookId).get();
+
+        assertEquals("book", view.getName());
+        assertEquals(userId, view.getHolderId());
+        assertEquals("user", view.getHolderName());
+        assertEquals(1L, view.getVersion());
+        assertEquals(0L, view.getHolderVersion());
+    }
+
+    private static List<Long> ids(List<BookView> books) {
+        return books.stream().map(BookView::getId).collect(Collectors.toList());
+    }
+}
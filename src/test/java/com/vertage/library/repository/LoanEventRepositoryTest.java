@@ -0,0 +1,63 @@
+package com.vertage.library.repository;
+
+import com.vertage.library.entity.LoanEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest
+public class LoanEventRepositoryTest {
+
+    @Autowired
+    private LoanEventRepository loanEventRepository;
+
+    @Test
+    void eventsAreAppendedWithTheirUser() {
+        loanEventRepository.appendAll(Arrays.asList(taken(1L, 10L), returned(1L, 10L), taken(1L, 11L), taken(2L, 10L)));
+
+        List<LoanEvent> history = loanEventRepository.findByBookIdAndIdGreaterThanOrderByIdAsc(1L, 0L, PageRequest.of(0, 10));
+
+        assertEquals(Arrays.asList(LoanEvent.Type.TAKEN, LoanEvent.Type.RETURNED, LoanEvent.Type.TAKEN),
+                history.stream().map(LoanEvent::getType).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(10L, 10L, 11L),
+                history.stream().map(LoanEvent::getUserId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void returnQueuedBeforeItsTakeIsStillRecorded() {
+        loanEventRepository.appendAll(Arrays.asList(returned(1L, 10L), taken(1L, 10L)));
+
+        List<LoanEvent> history = loanEventRepository.findByUserIdAndIdGreaterThanOrderByIdAsc(10L, 0L, PageRequest.of(0, 10));
+
+        assertEquals(2, history.size());
+    }
+
+    @Test
+    void findByUserPagesById() {
+        loanEventRepository.appendAll(Arrays.asList(taken(1L, 10L), taken(2L, 10L), taken(3L, 11L), returned(2L, 10L)));
+
+        List<LoanEvent> first = loanEventRepository.findByUserIdAndIdGreaterThanOrderByIdAsc(10L, 0L, PageRequest.of(0, 2));
+        List<LoanEvent> second = loanEventRepository.findByUserIdAndIdGreaterThanOrderByIdAsc(10L,
+                first.get(1).getId(), PageRequest.of(0, 2));
+
+        assertEquals(Arrays.asList(1L, 2L), first.stream().map(LoanEvent::getBookId).collect(Collectors.toList()));
+        assertEquals(1, second.size());
+        assertEquals(LoanEvent.Type.RETURNED, second.get(0).getType());
+    }
+
+    private static LoanEvent taken(Long bookId, Long userId) {
+        return new LoanEvent(null, bookId, userId, LoanEvent.Type.TAKEN, Instant.now());
+    }
+
+    private static LoanEvent returned(Long bookId, Long userId) {
+        return new LoanEvent(null, bookId, userId, LoanEvent.Type.RETURNED, Instant.now());
+    }
+}
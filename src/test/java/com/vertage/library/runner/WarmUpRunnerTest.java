@@ -0,0 +1,130 @@
+package com.vertage.library.runner;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vertage.library.admission.AdmissionFilter;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class WarmUpRunnerTest {
+
+    @Mock
+    private ApplicationContext applicationContext;
+
+    @Mock
+    private ObjectProvider<HikariDataSource> pools;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final List<MockClientHttpRequest> sent = Collections.synchronizedList(new ArrayList<>());
+
+    private WarmUpRunner runner;
+
+    @BeforeEach
+    void setUp() {
+        runner = new WarmUpRunner(applicationContext, pools, objectMapper, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(runner, "concurrency", 2);
+        ReflectionTestUtils.setField(runner, "replayFile", "");
+    }
+
+    @Test
+    void readPathsCoverSampledBooksAndUsers() throws Exception {
+        List<String> paths = runner.readPaths(
+                objectMapper.readTree("[{\"id\":1,\"name\":\"Война и мир\"},{\"id\":2,\"name\":\"It\"}]"),
+                objectMapper.readTree("[{\"id\":7}]"));
+
+        assertTrue(paths.containsAll(Arrays.asList("/books/1", "/books/1/availability", "/books?after=2&limit=20",
+                "/books/search?q=%D0%92%D0%BE%D0%B9&limit=20", "/books/batch?ids=1,2", "/users/7",
+                "/users?after=7&limit=20")));
+        assertEquals(1, paths.stream().filter(path -> path.startsWith("/books/search")).count());
+    }
+
+    @Test
+    void replayKeepsOnlyGetRequests(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("requests.txt");
+        Files.write(file, Arrays.asList("# sampled", "GET /books?limit=5", "", "/users/1", "POST /books",
+                "DELETE /books/1"), StandardCharsets.UTF_8);
+        ReflectionTestUtils.setField(runner, "replayFile", file.toString());
+
+        assertEquals(Arrays.asList("/books?limit=5", "/users/1"), runner.replayPaths());
+    }
+
+    @Test
+    void sendStopsAtRequestCountAndMarksItsRequests() {
+        WarmUpRunner.Outcome outcome = runner.send(stubbed(runner.restTemplate()), "http://localhost:8080",
+                Arrays.asList("/books/1", "/users/1"), 5, System.nanoTime() + Duration.ofMinutes(1).toNanos());
+
+        assertEquals(5, outcome.sent.get());
+        assertEquals(0, outcome.failed.get());
+        assertEquals(5, sent.size());
+        sent.forEach(request -> assertEquals("true", request.getHeaders().getFirst(AdmissionFilter.WARM_UP)));
+    }
+
+    @Test
+    void sendStopsAtDeadline() {
+        WarmUpRunner.Outcome outcome = runner.send(stubbed(runner.restTemplate()), "http://localhost:8080",
+                Collections.singletonList("/books/1"), 5, System.nanoTime());
+
+        assertEquals(0, outcome.sent.get());
+        assertTrue(sent.isEmpty());
+    }
+
+    @Test
+    void otherClientsDoNotMarkTheirRequests() {
+        stubbed(new RestTemplate()).getForObject("http://localhost:8080/books/1", byte[].class);
+
+        assertNull(sent.get(0).getHeaders().getFirst(AdmissionFilter.WARM_UP));
+    }
+
+    @Test
+    void runWithoutWebServerOpensEveryConnection() throws Exception {
+        HikariDataSource pool = mock(HikariDataSource.class);
+        Connection connection = mock(Connection.class);
+        when(pools.orderedStream()).thenAnswer(invocation -> Stream.of(pool));
+        when(pool.getMaximumPoolSize()).thenReturn(3);
+        when(pool.getConnection()).thenReturn(connection);
+        ReflectionTestUtils.setField(runner, "maxDuration", Duration.ofSeconds(1));
+
+        runner.run(null);
+
+        verify(connection, times(3)).close();
+        assertFalse(runner.isRunning());
+    }
+
+    private RestTemplate stubbed(RestTemplate restTemplate) {
+        restTemplate.setRequestFactory((uri, method) -> {
+            MockClientHttpRequest request = new MockClientHttpRequest(method, uri);
+            request.setResponse(new MockClientHttpResponse(new byte[0], HttpStatus.OK));
+            sent.add(request);
+            return request;
+        });
+        return restTemplate;
+    }
+}
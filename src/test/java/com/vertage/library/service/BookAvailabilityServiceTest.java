@@ -0,0 +1,100 @@
+package com.vertage.library.service;
+
+import com.vertage.library.dto.BookAvailability;
+import com.vertage.library.event.BookChangedEvent;
+import com.vertage.library.exception.BookNotFoundException;
+import com.vertage.library.exception.InvalidRequestDataException;
+import com.vertage.library.repository.BookRepository;
+import com.vertage.library.service.impl.BookAvailabilityServiceImpl;
+import com.vertage.library.util.LongLongConsumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+@ExtendWith(MockitoExtension.class)
+public class BookAvailabilityServiceTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    private BookAvailabilityServiceImpl availabilityService;
+
+    @BeforeEach
+    void setUp() {
+        availabilityService = new BookAvailabilityServiceImpl(bookRepository);
+        doAnswer(invocation -> {
+            LongLongConsumer consumer = invocation.getArgument(0);
+            consumer.accept(1L, 0L);
+            consumer.accept(2L, 7L);
+            return null;
+        }).when(bookRepository).forEachHolder(any());
+        availabilityService.load();
+    }
+
+    @Test
+    void getAvailabilityFromLoadedIndex() {
+        assertEquals(new BookAvailability(1L, true, null), availabilityService.getAvailability(1L));
+        assertEquals(new BookAvailability(2L, false, 7L), availabilityService.getAvailability(2L));
+    }
+
+    @Test
+    void getAvailabilityWhenBookNotFound() {
+        assertThrows(BookNotFoundException.class, () -> availabilityService.getAvailability(3L));
+    }
+
+    @Test
+    void getAvailabilityOfManySkipsUnknownIds() {
+        assertEquals(Arrays.asList(new BookAvailability(2L, false, 7L), new BookAvailability(1L, true, null)),
+                availabilityService.getAvailability(Arrays.asList(2L, 3L, null, 1L)));
+    }
+
+    @Test
+    void getAvailabilityOfTooManyIds() {
+        assertThrows(InvalidRequestDataException.class,
+                () -> availabilityService.getAvailability(Collections.nCopies(1001, 1L)));
+    }
+
+    @Test
+    void indexFollowsBookChanges() {
+        availabilityService.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.TAKEN, 1L, 5L, null));
+        availabilityService.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.RETURNED, 2L, null, null));
+        availabilityService.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.SAVED, 3L, null, null));
+
+        assertEquals(new BookAvailability(1L, false, 5L), availabilityService.getAvailability(1L));
+        assertEquals(new BookAvailability(2L, true, null), availabilityService.getAvailability(2L));
+        assertEquals(new BookAvailability(3L, true, null), availabilityService.getAvailability(3L));
+
+        availabilityService.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.DELETED, 3L, null, null));
+
+        assertThrows(BookNotFoundException.class, () -> availabilityService.getAvailability(3L));
+    }
+
+    @Test
+    void changesDuringLoadAreNotOverwritten() {
+        BookAvailabilityServiceImpl loading = new BookAvailabilityServiceImpl(bookRepository);
+        doAnswer(invocation -> {
+            LongLongConsumer consumer = invocation.getArgument(0);
+            consumer.accept(1L, 0L);
+            loading.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.DELETED, 2L, null, null));
+            loading.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.TAKEN, 3L, 5L, null));
+            consumer.accept(2L, 0L);
+            consumer.accept(3L, 0L);
+            return null;
+        }).when(bookRepository).forEachHolder(any());
+
+        loading.load();
+
+        assertThrows(BookNotFoundException.class, () -> loading.getAvailability(2L));
+        assertEquals(new BookAvailability(3L, false, 5L), loading.getAvailability(3L));
+    }
+}
@@ -0,0 +1,139 @@
+package com.vertage.library.service;
+
+import com.vertage.library.controller.BookController;
+import com.vertage.library.event.BookChangedEvent;
+import com.vertage.library.exception.CommonExceptionHandler;
+import com.vertage.library.service.impl.BookFeedServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class BookFeedServiceTest {
+
+    private static final Pattern FIRST_ID = Pattern.compile("id:(\\S+)");
+
+    private BookFeedServiceImpl feed;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        feed = new BookFeedServiceImpl(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(feed, "history", 3);
+        ReflectionTestUtils.setField(feed, "bufferSize", 8);
+        ReflectionTestUtils.setField(feed, "maxSubscribers", 2);
+        ReflectionTestUtils.setField(feed, "senders", 1);
+        ReflectionTestUtils.setField(feed, "heartbeat", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(feed, "timeout", Duration.ofMinutes(1));
+        feed.start();
+        mockMvc = MockMvcBuilders.standaloneSetup(new BookController(mock(BookService.class),
+                mock(BookAvailabilityService.class), mock(BookSearchService.class), mock(LoanHistoryService.class), feed,
+                mock(GroupCommitService.class)))
+                .setControllerAdvice(new CommonExceptionHandler(new SimpleMeterRegistry()))
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        feed.stop();
+    }
+
+    @Test
+    void pushesChangesToSubscribers() throws Exception {
+        MvcResult stream = subscribe(null);
+
+        feed.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.TAKEN, 1L, 2L, null));
+        feed.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.RETURNED, 1L, null, null));
+
+        String content = awaitContent(stream, "event:returned");
+        assertTrue(content.contains("event:taken\ndata:{\"type\":\"TAKEN\",\"bookId\":1,\"userId\":2,\"name\":null}"));
+        assertTrue(content.indexOf("event:taken") < content.indexOf("event:returned"));
+    }
+
+    @Test
+    void resumesAfterLastEventId() throws Exception {
+        MvcResult first = subscribe(null);
+        feed.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.TAKEN, 1L, 2L, null));
+        Matcher id = FIRST_ID.matcher(awaitContent(first, "event:taken"));
+        assertTrue(id.find());
+        feed.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.DELETED, 3L, null, null));
+
+        MvcResult resumed = subscribe(id.group(1));
+
+        String content = awaitContent(resumed, "event:deleted");
+        assertFalse(content.contains("event:taken"));
+    }
+
+    @Test
+    void resetsWhenMissedChangesAreGone() throws Exception {
+        MvcResult first = subscribe(null);
+        feed.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.TAKEN, 1L, 2L, null));
+        Matcher id = FIRST_ID.matcher(awaitContent(first, "event:taken"));
+        assertTrue(id.find());
+        for (long bookId = 2; bookId <= 5; bookId++) {
+            feed.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.DELETED, bookId, null, null));
+        }
+        awaitContent(first, "\"bookId\":5");
+
+        assertFalse(awaitContent(subscribe(id.group(1)), "event:reset").contains("event:deleted"));
+    }
+
+    @Test
+    void resetsOnIdOfAnotherProcess() throws Exception {
+        awaitContent(subscribe("otherepoch-5"), "event:reset");
+    }
+
+    @Test
+    void stopCompletesStreams() throws Exception {
+        MvcResult stream = subscribe(null);
+        feed.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.TAKEN, 1L, 2L, null));
+        awaitContent(stream, "event:taken");
+
+        feed.stop();
+
+        assertNull(stream.getAsyncResult(TimeUnit.SECONDS.toMillis(5)));
+    }
+
+    @Test
+    void rejectsSubscribersOverLimit() throws Exception {
+        subscribe(null);
+        subscribe(null);
+
+        mockMvc.perform(get("/books/events"))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    private MvcResult subscribe(String lastEventId) throws Exception {
+        return mockMvc.perform(lastEventId == null
+                ? get("/books/events")
+                : get("/books/events").header("Last-Event-ID", lastEventId))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+    }
+
+    private static String awaitContent(MvcResult stream, String expected) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        String content;
+        while (!(content = stream.getResponse().getContentAsString()).contains(expected)) {
+            assertTrue(System.nanoTime() < deadline, "timed out waiting for " + expected + " in " + content);
+            Thread.sleep(5);
+        }
+        return content;
+    }
+}
@@ -0,0 +1,186 @@
+package com.vertage.library.service;
+
+import com.vertage.library.dto.BookSearchHit;
+import com.vertage.library.event.BookChangedEvent;
+import com.vertage.library.exception.InvalidRequestDataException;
+import com.vertage.library.repository.BookRepository;
+import com.vertage.library.service.impl.BookSearchServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.ObjLongConsumer;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+@ExtendWith(MockitoExtension.class)
+public class BookSearchServiceTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    private BookSearchServiceImpl searchService;
+
+    @BeforeEach
+    void setUp() {
+        searchService = new BookSearchServiceImpl(bookRepository);
+        doAnswer(invocation -> {
+            ObjLongConsumer<String> consumer = invocation.getArgument(0);
+            consumer.accept("War and Peace", 1L);
+            consumer.accept("The Art of War", 2L);
+            consumer.accept("Warriors of the Wasteland", 3L);
+            consumer.accept("Les Misérables", 4L);
+            consumer.accept("Peace", 5L);
+            return null;
+        }).when(bookRepository).forEachName(any());
+        searchService.load();
+    }
+
+    @Test
+    void searchRanksExactMatchesBeforePrefixMatches() {
+        assertEquals(Arrays.asList(1L, 2L, 3L), ids(searchService.search("war", null, null, 10)));
+    }
+
+    @Test
+    void searchRequiresEveryWord() {
+        assertEquals(Collections.singletonList(1L), ids(searchService.search("peace WAR", null, null, 10)));
+        assertEquals(Collections.emptyList(), searchService.search("peace art", null, null, 10));
+    }
+
+    @Test
+    void searchIgnoresCaseAndAccents() {
+        List<BookSearchHit> hits = searchService.search("MISERA", null, null, 10);
+
+        assertEquals(1, hits.size());
+        assertEquals("Les Misérables", hits.get(0).getName());
+    }
+
+    @Test
+    void searchPagesAfterCursor() {
+        List<BookSearchHit> first = searchService.search("war", null, null, 2);
+        BookSearchHit last = first.get(1);
+
+        assertEquals(Arrays.asList(1L, 2L), ids(first));
+        assertEquals(Collections.singletonList(3L), ids(searchService.search("war", last.getScore(), last.getId(), 2)));
+    }
+
+    @Test
+    void searchFollowsBookChanges() {
+        searchService.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.SAVED, 5L, null, "Peace of War"));
+        searchService.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.DELETED, 1L, null, null));
+        searchService.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.TAKEN, 2L, 9L, null));
+
+        assertEquals(Arrays.asList(2L, 5L, 3L), ids(searchService.search("war", null, null, 10)));
+        assertTrue(searchService.search("wasteland", null, null, 10).stream().allMatch(hit -> hit.getId() == 3L));
+    }
+
+    @Test
+    void searchPagesThroughEveryMatchOnceInRankingOrder() {
+        String[] words = {"war", "warden", "wardrobe", "peace", "wars", "art"};
+        Random random = new Random(42);
+        Set<Long> matching = new HashSet<>();
+        for (long id = 10; id < 2000; id++) {
+            String name = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)]
+                    + " " + words[random.nextInt(words.length)];
+            searchService.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.SAVED, id, null, name));
+            if (id % 7 == 0) {
+                searchService.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.SAVED, id, null, "peace"));
+            } else if (id % 11 == 0) {
+                searchService.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.DELETED, id, null, null));
+            } else if (name.contains("war")) {
+                matching.add(id);
+            }
+        }
+        matching.addAll(Arrays.asList(1L, 2L, 3L));
+
+        List<BookSearchHit> hits = new ArrayList<>();
+        List<BookSearchHit> page = searchService.search("war", null, null, 7);
+        while (!page.isEmpty()) {
+            hits.addAll(page);
+            BookSearchHit last = page.get(page.size() - 1);
+            page = searchService.search("war", last.getScore(), last.getId(), 7);
+        }
+
+        assertEquals(matching, new HashSet<>(ids(hits)));
+        assertEquals(matching.size(), hits.size());
+        for (int i = 1; i < hits.size(); i++) {
+            BookSearchHit previous = hits.get(i - 1);
+            BookSearchHit hit = hits.get(i);
+            assertTrue(previous.getScore() > hit.getScore()
+                    || (previous.getScore() == hit.getScore() && previous.getId() < hit.getId()));
+        }
+    }
+
+    @Test
+    void searchPagesThroughEveryBookMatchingSeveralWords() {
+        Set<Long> matching = new HashSet<>();
+        for (long id = 100; id < 2100; id++) {
+            String name = id % 4 == 0 ? "Beta Gamma" : id % 3 == 0 ? "Alpha alpha Beta " + id : "Alpha Beta " + id;
+            searchService.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.SAVED, id, null, name));
+            if (id % 4 != 0) {
+                matching.add(id);
+            }
+        }
+
+        List<BookSearchHit> hits = new ArrayList<>();
+        List<BookSearchHit> page = searchService.search("alpha beta", null, null, 100);
+        while (!page.isEmpty()) {
+            hits.addAll(page);
+            BookSearchHit last = page.get(page.size() - 1);
+            page = searchService.search("alpha beta", last.getScore(), last.getId(), 100);
+        }
+
+        assertTrue(matching.size() > 1024);
+        assertEquals(matching, new HashSet<>(ids(hits)));
+        assertEquals(matching.size(), hits.size());
+        for (int i = 1; i < hits.size(); i++) {
+            BookSearchHit previous = hits.get(i - 1);
+            BookSearchHit hit = hits.get(i);
+            assertTrue(previous.getScore() > hit.getScore()
+                    || (previous.getScore() == hit.getScore() && previous.getId() < hit.getId()));
+        }
+    }
+
+    @Test
+    void changesDuringLoadAreNotOverwritten() {
+        BookSearchServiceImpl loading = new BookSearchServiceImpl(bookRepository);
+        doAnswer(invocation -> {
+            ObjLongConsumer<String> consumer = invocation.getArgument(0);
+            consumer.accept("War and Peace", 1L);
+            loading.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.DELETED, 2L, null, null));
+            loading.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.SAVED, 3L, null, "Peace"));
+            consumer.accept("The Art of War", 2L);
+            consumer.accept("Warriors of the Wasteland", 3L);
+            return null;
+        }).when(bookRepository).forEachName(any());
+
+        loading.load();
+
+        assertEquals(Collections.singletonList(1L), ids(loading.search("war", null, null, 10)));
+        assertEquals(Arrays.asList(1L, 3L), ids(loading.search("peace", null, null, 10)));
+    }
+
+    @Test
+    void searchWithInvalidArguments() {
+        assertThrows(InvalidRequestDataException.class, () -> searchService.search("war", null, null, 0));
+        assertThrows(InvalidRequestDataException.class, () -> searchService.search("a b c d e f g h i", null, null, 10));
+    }
+
+    private static List<Long> ids(List<BookSearchHit> hits) {
+        return hits.stream().map(BookSearchHit::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,143 @@
+package com.vertage.library.service;
+
+import com.vertage.library.config.CacheConfig;
+import com.vertage.library.dto.BookView;
+import com.vertage.library.dto.LoanRequest;
+import com.vertage.library.dto.UserView;
+import com.vertage.library.entity.Book;
+import com.vertage.library.repository.BookRepository;
+import com.vertage.library.service.impl.BookServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.*;
+
+@SpringJUnitConfig
+public class BookServiceCacheTest {
+
+    @Configuration
+    @Import({CacheConfig.class, BookServiceImpl.class})
+    static class Config {
+        @Bean
+        CacheManager cacheManager() {
+            return new ConcurrentMapCacheManager(CacheConfig.BOOKS, CacheConfig.USERS);
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @MockBean
+    private BookRepository bookRepository;
+
+    @MockBean
+    private UserService userService;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private Book book;
+
+    private BookView view;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager.getCache(CacheConfig.BOOKS).clear();
+        cacheManager.getCache(CacheConfig.USERS).clear();
+        book = new Book(1L, "book1", null);
+        view = new BookView(1L, "book1", null, null, 0L, null);
+        when(bookRepository.findViewById(1L)).thenReturn(Optional.of(view));
+    }
+
+    @Test
+    void getViewByIdIsServedFromCache() {
+        assertEquals(view, bookService.getViewById(1L));
+        assertEquals(view, bookService.getViewById(1L));
+
+        verify(bookRepository, times(1)).findViewById(1L);
+    }
+
+    @Test
+    void takeBookEvictsBookAndHolder() {
+        cacheManager.getCache(CacheConfig.USERS).put(2L, new UserView(2L, "user2", 0L, 0L));
+        when(bookRepository.takeBook(1L, 2L)).thenReturn(1);
+
+        bookService.getViewById(1L);
+        bookService.takeBook(1L, 2L);
+        bookService.getViewById(1L);
+
+        verify(bookRepository, times(2)).findViewById(1L);
+        assertNull(cacheManager.getCache(CacheConfig.USERS).get(2L));
+    }
+
+    @Test
+    void returnBookEvictsBook() {
+        when(bookRepository.returnBook(1L)).thenReturn(1);
+
+        bookService.getViewById(1L);
+        bookService.returnBook(1L);
+        bookService.getViewById(1L);
+
+        verify(bookRepository, times(2)).findViewById(1L);
+    }
+
+    @Test
+    void saveAndDeleteEvictBook() {
+        when(bookRepository.save(book)).thenReturn(book);
+
+        bookService.getViewById(1L);
+        bookService.save(book);
+        bookService.getViewById(1L);
+        bookService.deleteById(1L);
+        bookService.getViewById(1L);
+
+        verify(bookRepository, times(3)).findViewById(1L);
+    }
+
+    @Test
+    void returnAndTakeBooksEvictsOnlyChangedBooksAndHolders() {
+        Cache books = cacheManager.getCache(CacheConfig.BOOKS);
+        Cache users = cacheManager.getCache(CacheConfig.USERS);
+        books.put(1L, view);
+        books.put(2L, view);
+        books.put(3L, view);
+        users.put(4L, new UserView(4L, "user4", 1L, 0L));
+        users.put(5L, new UserView(5L, "user5", 0L, 0L));
+        users.put(6L, new UserView(6L, "user6", 0L, 0L));
+        when(bookRepository.lockHolders(Collections.singletonList(1L))).thenReturn(Collections.singletonMap(1L, 4L));
+        when(bookRepository.returnBooks(Collections.singletonList(1L))).thenReturn(new int[]{1});
+        when(bookRepository.takeBooks(anyList())).thenReturn(new int[]{1});
+
+        bookService.returnAndTakeBooks(Collections.singletonList(1L),
+                Collections.singletonList(new LoanRequest(2L, 5L)));
+
+        assertNull(books.get(1L));
+        assertNull(books.get(2L));
+        assertNotNull(books.get(3L));
+        assertNull(users.get(4L));
+        assertNull(users.get(5L));
+        assertNotNull(users.get(6L));
+    }
+}
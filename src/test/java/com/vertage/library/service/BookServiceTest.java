@@ -1,24 +1,43 @@
 package com.vertage.library.service;
 
+import com.vertage.library.dto.BookView;
+import com.vertage.library.dto.LoanRequest;
+import com.vertage.library.dto.LoanResult;
+import com.vertage.library.dto.LoanStatus;
 import com.vertage.library.entity.Book;
 import com.vertage.library.entity.User;
+import com.vertage.library.event.BookChangedEvent;
 import com.vertage.library.exception.BookNotFoundException;
 import com.vertage.library.exception.InvalidRequestDataException;
+import com.vertage.library.exception.PreconditionFailedException;
 import com.vertage.library.exception.UserNotFoundException;
 import com.vertage.library.repository.BookRepository;
 import com.vertage.library.service.impl.BookServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -30,14 +49,25 @@ public class BookServiceTest {
     @Mock
     private UserService userService;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private ObjectProvider<CacheManager> cacheManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     private Book book;
 
+    private BookView view;
+
     private BookService bookService;
 
     @BeforeEach
     public void setUp() {
-        bookService = new BookServiceImpl(bookRepository, userService);
+        bookService = new BookServiceImpl(bookRepository, userService, eventPublisher, meterRegistry, cacheManager);
         book = new Book(1L, "book1", null);
+        view = new BookView(1L, "book1", null, null, 0L, null);
     }
 
     @Test
@@ -59,14 +89,74 @@ public class BookServiceTest {
         assertThrows(NullPointerException.class, () -> bookService.getById(null));
     }
 
+    @Test
+    void getViewByIdSuccessCase() {
+        when(bookRepository.findViewById(1L)).thenReturn(Optional.of(view));
+
+        assertEquals(view, bookService.getViewById(1L));
+    }
+
+    @Test
+    void getViewsByIdsKeepsRequestedOrderAndSkipsUnknownIds() {
+        BookView view2 = new BookView(2L, "book2", null, null, 0L, null);
+        when(bookRepository.findViewsByIdIn(new LinkedHashSet<>(Arrays.asList(2L, 9L, 1L))))
+                .thenReturn(Arrays.asList(view, view2));
+
+        assertEquals(Arrays.asList(view2, view), bookService.getViewsByIds(Arrays.asList(2L, 9L, 2L, null, 1L)));
+    }
+
+    @Test
+    void getViewsByIdsRejectsOversizedBatch() {
+        List<Long> ids = LongStream.rangeClosed(1, 1001).boxed().collect(Collectors.toList());
+
+        assertThrows(InvalidRequestDataException.class, () -> bookService.getViewsByIds(ids));
+        verifyNoInteractions(bookRepository);
+    }
+
     @Test
     void getAllSuccessCase() {
-        Book book2 = new Book(2L, "book2", null);
-        List<Book> expectedBooks = Arrays.asList(book, book2);
+        List<BookView> expectedBooks = Arrays.asList(view, new BookView(2L, "book2", null, null, 0L, null));
+
+        when(bookRepository.findViewsAfter(0L, PageRequest.of(0, 2))).thenReturn(expectedBooks);
+
+        assertEquals(expectedBooks.size(), bookService.getAll(null, 2).size());
+    }
+
+    @Test
+    void getAllWhenLimitIsOutOfRange() {
+        assertThrows(InvalidRequestDataException.class, () -> bookService.getAll(null, 0));
+        assertThrows(InvalidRequestDataException.class, () -> bookService.getAll(null, 1001));
+
+        verifyNoInteractions(bookRepository);
+    }
+
+    @Test
+    void getAllFilteredByAvailability() {
+        when(bookRepository.findAvailableViewsAfter(0L, PageRequest.of(0, 2)))
+                .thenReturn(Collections.singletonList(view));
 
-        when(bookRepository.findAll()).thenReturn(expectedBooks);
+        assertEquals(Collections.singletonList(view), bookService.getAll(true, null, null, null, 2));
+        assertEquals(Collections.emptyList(), bookService.getAll(false, null, 3L, 1L, 2));
 
-        assertEquals(expectedBooks.size(), bookService.getAll().size());
+        verify(bookRepository, times(1)).findTakenViewsAfter(3L, 1L, PageRequest.of(0, 2));
+        assertThrows(InvalidRequestDataException.class, () -> bookService.getAll(true, null, 3L, 1L, 2));
+    }
+
+    @Test
+    void getAllFilteredByUser() {
+        when(bookRepository.findViewsByHolderAfter(3L, 1L, PageRequest.of(0, 2)))
+                .thenReturn(Collections.singletonList(view));
+
+        assertEquals(Collections.singletonList(view), bookService.getAll(false, 3L, null, 1L, 2));
+        assertThrows(InvalidRequestDataException.class, () -> bookService.getAll(true, 3L, null, 1L, 2));
+    }
+
+    @Test
+    void getAllByNameStartsFromEmptyName() {
+        when(bookRepository.findViewsOrderByName("", 0L, PageRequest.of(0, 2)))
+                .thenReturn(Collections.singletonList(view));
+
+        assertEquals(Collections.singletonList(view), bookService.getAllByName(null, null, 2));
     }
 
     @Test
@@ -74,6 +164,7 @@ public class BookServiceTest {
         bookService.deleteById(1L);
 
         verify(bookRepository, times(1)).deleteById(1L);
+        verify(eventPublisher, times(1)).publishEvent(new BookChangedEvent(BookChangedEvent.Type.DELETED, 1L, null, null));
     }
 
     @Test()
@@ -81,11 +172,34 @@ public class BookServiceTest {
         assertThrows(NullPointerException.class, () -> bookService.deleteById(null));
     }
 
+    @Test
+    void deleteByIdsPublishesExistingOnly() {
+        Set<Long> ids = new LinkedHashSet<>(Arrays.asList(1L, 2L, 3L));
+        when(bookRepository.lockIdsByIdIn(ids)).thenReturn(Arrays.asList(1L, 3L));
+        when(bookRepository.deleteByIdIn(Arrays.asList(1L, 3L))).thenReturn(2);
+
+        assertEquals(2, bookService.deleteByIds(Arrays.asList(1L, 2L, null, 3L, 1L)));
+
+        verify(eventPublisher).publishEvent(new BookChangedEvent(BookChangedEvent.Type.DELETED, 1L, null, null));
+        verify(eventPublisher).publishEvent(new BookChangedEvent(BookChangedEvent.Type.DELETED, 3L, null, null));
+        verifyNoMoreInteractions(eventPublisher);
+    }
+
+    @Test
+    void deleteByIdsWhenNoneExist() {
+        when(bookRepository.lockIdsByIdIn(Collections.singleton(7L))).thenReturn(Collections.emptyList());
+
+        assertEquals(0, bookService.deleteByIds(Collections.singletonList(7L)));
+        verify(bookRepository, never()).deleteByIdIn(any());
+    }
+
     @Test
     void saveSuccessCase() {
         when(bookRepository.save(book)).thenReturn(book);
 
         assertEquals(book, bookService.save(book));
+
+        verify(eventPublisher, times(1)).publishEvent(new BookChangedEvent(BookChangedEvent.Type.SAVED, 1L, null, "book1"));
     }
 
     @Test()
@@ -94,25 +208,50 @@ public class BookServiceTest {
     }
 
     @Test
-    void takeBookSuccessCase() {
-        Book spyBook = spy(book);
-        User user = new User();
+    void updateCopiesStoredVersion() {
+        Book changed = new Book(null, "new", null);
+        when(bookRepository.findViewById(1L)).thenReturn(Optional.of(new BookView(1L, "old", 2L, "user2", 4L, 0L)));
+        when(bookRepository.saveAndFlush(changed)).thenReturn(changed);
+
+        bookService.update(1L, changed, "4-0");
 
-        when(bookRepository.findById(1L)).thenReturn(Optional.of(spyBook));
-        when(userService.getById(1L)).thenReturn(user);
+        assertEquals(1L, changed.getId());
+        assertEquals(4L, changed.getVersion());
+        verify(bookRepository, times(1)).saveAndFlush(changed);
+    }
+
+    @Test
+    void updateWhenRevisionChanged() {
+        when(bookRepository.findViewById(1L)).thenReturn(Optional.of(new BookView(1L, "old", null, null, 5L, null)));
+
+        assertThrows(PreconditionFailedException.class, () -> bookService.update(1L, book, "4"));
+
+        verify(bookRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void updateWithExpectedRevisionWhenBookNotFound() {
+        when(bookRepository.findViewById(1L)).thenReturn(Optional.empty());
+
+        assertThrows(PreconditionFailedException.class, () -> bookService.update(1L, book, "0"));
+    }
+
+    @Test
+    void takeBookSuccessCase() {
+        when(bookRepository.takeBook(1L, 1L)).thenReturn(1);
 
         bookService.takeBook(1L, 1L);
 
-        verify(bookRepository, times(1)).findById(1L);
-        verify(userService, times(1)).getById(1L);
-        verify(spyBook, times(1)).setUser(user);
+        verify(bookRepository, times(1)).takeBook(1L, 1L);
+        verify(bookRepository, times(0)).findById(1L);
+        verifyNoInteractions(userService);
+        verify(eventPublisher, times(1)).publishEvent(new BookChangedEvent(BookChangedEvent.Type.TAKEN, 1L, 1L, null));
     }
 
     @Test
     void takeBookWhenBookNotFound() {
-        User user = new User();
-
-        when(bookRepository.findById(1L)).thenThrow(BookNotFoundException.class);
+        when(bookRepository.takeBook(1L, 1L)).thenReturn(0);
+        when(bookRepository.findById(1L)).thenReturn(Optional.empty());
 
         assertThrows(BookNotFoundException.class, () -> bookService.takeBook(1L, 1L));
 
@@ -132,43 +271,51 @@ public class BookServiceTest {
 
     @Test
     void takeBookWhenUserNotFound() {
-        User user = new User();
-        Book spyBook = spy(book);
-
-        when(bookRepository.findById(1L)).thenReturn(Optional.of(spyBook));
-        when(userService.getById(1L)).thenThrow(UserNotFoundException.class);
+        when(bookRepository.takeBook(1L, 1L)).thenReturn(0);
+        when(bookRepository.findById(1L)).thenReturn(Optional.of(book));
+        when(userService.getViewById(1L)).thenThrow(UserNotFoundException.class);
 
         assertThrows(UserNotFoundException.class, () -> bookService.takeBook(1L, 1L));
 
         verify(bookRepository, times(1)).findById(1L);
-        verify(userService, times(1)).getById(1L);
-        verify(spyBook, times(0)).setUser(user);
+        verify(userService, times(1)).getViewById(1L);
     }
 
     @Test
     void takeBookWhenBookTaken() {
-        User user = new User();
-        book.setUser(user);
-        Book spyBook = spy(book);
+        book.setUser(new User());
 
-        when(bookRepository.findById(1L)).thenReturn(Optional.of(spyBook));
+        when(bookRepository.takeBook(1L, 1L)).thenReturn(0);
+        when(bookRepository.findById(1L)).thenReturn(Optional.of(book));
 
         assertThrows(InvalidRequestDataException.class, () -> bookService.takeBook(1L, 1L));
 
-
         verify(bookRepository, times(1)).findById(1L);
         verify(userService, times(0)).getById(1L);
-        verify(spyBook, times(0)).setUser(user);
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void takeBookWhenBookTakenCountsConflict() {
+        book.setUser(new User());
+        when(bookRepository.takeBook(1L, 1L)).thenReturn(0);
+        when(bookRepository.findById(1L)).thenReturn(Optional.of(book));
+
+        assertThrows(InvalidRequestDataException.class, () -> bookService.takeBook(1L, 1L));
+
+        assertEquals(1.0, meterRegistry.get("library.book.take.conflicts").counter().count());
     }
 
     @Test
     void returnBookSuccessCase() {
-        Book spyBook = spy(book);
-        when(bookRepository.findById(1L)).thenReturn(Optional.of(spyBook));
+        when(bookRepository.lockHolders(Collections.singletonList(1L))).thenReturn(Collections.singletonMap(1L, 2L));
+        when(bookRepository.returnBook(1L)).thenReturn(1);
 
         bookService.returnBook(1L);
-        verify(bookRepository, times(1)).findById(1L);
-        verify(spyBook, times(1)).setUser(null);
+
+        verify(bookRepository, times(1)).returnBook(1L);
+        verify(bookRepository, times(0)).findById(1L);
+        verify(eventPublisher, times(1)).publishEvent(new BookChangedEvent(BookChangedEvent.Type.RETURNED, 1L, null, null, 2L));
     }
 
     @Test()
@@ -178,16 +325,103 @@ public class BookServiceTest {
 
     @Test
     void returnBookWhenBookNotFound() {
-        when(bookRepository.findById(1L)).thenThrow(BookNotFoundException.class);
+        when(bookRepository.returnBook(1L)).thenReturn(0);
 
         assertThrows(BookNotFoundException.class, () -> bookService.returnBook(1L));
 
-        verify(bookRepository, times(1)).findById(1L);
+        verify(bookRepository, times(1)).returnBook(1L);
     }
-}
 
+    @Test
+    void takeBooksReportsStatusPerItem() {
+        Book takenBook = new Book(2L, "book2", new User());
+        Book freeBook = new Book(3L, "book3", null);
+        List<LoanRequest> requests = Arrays.asList(
+                new LoanRequest(1L, 1L), new LoanRequest(2L, 1L), new LoanRequest(3L, 9L), new LoanRequest(4L, 1L));
+
+        when(bookRepository.takeBooks(requests)).thenReturn(new int[]{1, 0, 0, 0});
+        when(bookRepository.findAllById(new HashSet<>(Arrays.asList(2L, 3L, 4L))))
+                .thenReturn(Arrays.asList(takenBook, freeBook));
+
+        List<LoanResult> results = bookService.takeBooks(requests);
+
+        assertEquals(Arrays.asList(
+                new LoanResult(1L, 1L, LoanStatus.OK),
+                new LoanResult(2L, 1L, LoanStatus.ALREADY_TAKEN),
+                new LoanResult(3L, 9L, LoanStatus.USER_NOT_FOUND),
+                new LoanResult(4L, 1L, LoanStatus.BOOK_NOT_FOUND)), results);
+        verify(eventPublisher, times(1)).publishEvent(any(BookChangedEvent.class));
+        verify(eventPublisher, times(1)).publishEvent(new BookChangedEvent(BookChangedEvent.Type.TAKEN, 1L, 1L, null));
+    }
+
+    @Test
+    void takeBooksWhenAllSucceed() {
+        List<LoanRequest> requests = Collections.singletonList(new LoanRequest(1L, 1L));
 
+        when(bookRepository.takeBooks(requests)).thenReturn(new int[]{1});
 
+        assertEquals(LoanStatus.OK, bookService.takeBooks(requests).get(0).getStatus());
 
+        verify(bookRepository, times(0)).findAllById(any());
+    }
+
+    @Test
+    void takeBooksWhenItemIsIncomplete() {
+        List<LoanRequest> requests = Collections.singletonList(new LoanRequest(1L, null));
 
+        assertThrows(InvalidRequestDataException.class, () -> bookService.takeBooks(requests));
 
+        verify(bookRepository, times(0)).takeBooks(any());
+    }
+
+    @Test
+    void takeBooksWhenBatchIsEmpty() {
+        assertThrows(InvalidRequestDataException.class, () -> bookService.takeBooks(Collections.emptyList()));
+    }
+
+    @Test
+    void returnAndTakeBooksReturnsFirst() {
+        List<Long> ids = Collections.singletonList(1L);
+        List<LoanRequest> requests = Collections.singletonList(new LoanRequest(1L, 2L));
+
+        when(bookRepository.returnBooks(ids)).thenReturn(new int[]{1});
+        when(bookRepository.takeBooks(requests)).thenReturn(new int[]{1});
+
+        assertEquals(Arrays.asList(new LoanResult(1L, null, LoanStatus.OK), new LoanResult(1L, 2L, LoanStatus.OK)),
+                bookService.returnAndTakeBooks(ids, requests));
+
+        InOrder order = inOrder(bookRepository);
+        order.verify(bookRepository).returnBooks(ids);
+        order.verify(bookRepository).takeBooks(requests);
+    }
+
+    @Test
+    void returnAndTakeBooksSkipsEmptySide() {
+        List<LoanRequest> requests = Collections.singletonList(new LoanRequest(1L, 2L));
+
+        when(bookRepository.takeBooks(requests)).thenReturn(new int[]{1});
+
+        assertEquals(1, bookService.returnAndTakeBooks(Collections.emptyList(), requests).size());
+        verify(bookRepository, times(0)).returnBooks(any());
+    }
+
+    @Test
+    void returnBooksReportsStatusPerItem() {
+        List<Long> ids = Arrays.asList(1L, 2L);
+
+        when(bookRepository.returnBooks(ids)).thenReturn(new int[]{1, 0});
+
+        assertEquals(Arrays.asList(
+                new LoanResult(1L, null, LoanStatus.OK),
+                new LoanResult(2L, null, LoanStatus.BOOK_NOT_FOUND)), bookService.returnBooks(ids));
+    }
+
+    @Test
+    void returnBooksWhenBatchIsTooLarge() {
+        List<Long> ids = Collections.nCopies(1001, 1L);
+
+        assertThrows(InvalidRequestDataException.class, () -> bookService.returnBooks(ids));
+
+        verify(bookRepository, times(0)).returnBooks(any());
+    }
+}
@@ -0,0 +1,80 @@
+package com.vertage.library.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vertage.library.dto.DataFormat;
+import com.vertage.library.entity.Book;
+import com.vertage.library.entity.User;
+import com.vertage.library.service.impl.CatalogExportServiceImpl;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest
+public class CatalogExportServiceTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private CatalogExportService catalogExportService;
+
+    private Long userId;
+
+    private Long takenBookId;
+
+    private Long freeBookId;
+
+    @BeforeEach
+    void setUp() {
+        catalogExportService = new CatalogExportServiceImpl(new ObjectMapper());
+        ReflectionTestUtils.setField(catalogExportService, "entityManager", entityManager.getEntityManager());
+        ReflectionTestUtils.setField(catalogExportService, "fetchSize", 100);
+
+        User user = entityManager.persist(new User(null, "Doe, John", null));
+        userId = user.getId();
+        takenBookId = entityManager.persistAndGetId(new Book(null, "taken", user), Long.class);
+        freeBookId = entityManager.persistAndGetId(new Book(null, "say \"hi\"", null), Long.class);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void exportBooksAsNdjson() throws IOException {
+        String expected = "{\"id\":" + takenBookId + ",\"name\":\"taken\",\"userId\":" + userId
+                + ",\"userName\":\"Doe, John\"}\n"
+                + "{\"id\":" + freeBookId + ",\"name\":\"say \\\"hi\\\"\"}\n";
+
+        assertEquals(expected, export(DataFormat.NDJSON));
+    }
+
+    @Test
+    void exportBooksAsCsv() throws IOException {
+        String expected = "id,name,user_id,user_name\n"
+                + takenBookId + ",taken," + userId + ",\"Doe, John\"\n"
+                + freeBookId + ",\"say \"\"hi\"\"\",,\n";
+
+        assertEquals(expected, export(DataFormat.CSV));
+    }
+
+    @Test
+    void exportDoesNotAttachEntities() throws IOException {
+        export(DataFormat.NDJSON);
+
+        assertEquals(0, entityManager.getEntityManager().unwrap(Session.class).getStatistics().getEntityCount());
+    }
+
+    private String export(DataFormat format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        catalogExportService.exportBooks(out, format);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
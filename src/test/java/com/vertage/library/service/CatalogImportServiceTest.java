@@ -0,0 +1,141 @@
+package com.vertage.library.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vertage.library.dto.DataFormat;
+import com.vertage.library.dto.ImportReport;
+import com.vertage.library.entity.Book;
+import com.vertage.library.entity.User;
+import com.vertage.library.event.BookChangedEvent;
+import com.vertage.library.exception.InvalidRequestDataException;
+import com.vertage.library.repository.BookRepository;
+import com.vertage.library.repository.UserRepository;
+import com.vertage.library.service.impl.CatalogImportServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CatalogImportServiceTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private CatalogImportService catalogImportService;
+
+    @BeforeEach
+    void setUp() {
+        catalogImportService = new CatalogImportServiceImpl(bookRepository, userRepository,
+                new TransactionTemplate(transactionManager), new ObjectMapper(), eventPublisher);
+        ReflectionTestUtils.setField(catalogImportService, "batchSize", 2);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importBooksFromNdjsonInChunks() {
+        InputStream in = stream("{\"name\":\"book1\"}\n{\"name\":\"book2\"}\n\nnot json\n{\"name\":\"book3\"}\n");
+        ArgumentCaptor<List<Book>> chunks = ArgumentCaptor.forClass(List.class);
+
+        ImportReport report = catalogImportService.importBooks(in, DataFormat.NDJSON);
+
+        verify(bookRepository, times(2)).saveAll(chunks.capture());
+        assertEquals(Arrays.asList("book1", "book2"), names(chunks.getAllValues().get(0)));
+        assertEquals(Arrays.asList("book3"), names(chunks.getAllValues().get(1)));
+        assertEquals(3, report.getImported());
+        assertEquals(1, report.getFailed());
+        assertEquals(2, report.getChunks());
+        assertEquals(1, report.getErrors().size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importBooksPublishesSavedBooks() {
+        when(bookRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Book> books = invocation.getArgument(0);
+            books.forEach(book -> book.setId((long) book.getName().length()));
+            return books;
+        });
+
+        catalogImportService.importBooks(stream("{\"name\":\"book\"}\n"), DataFormat.NDJSON);
+
+        verify(eventPublisher, times(1)).publishEvent(
+                new BookChangedEvent(BookChangedEvent.Type.SAVED, 4L, null, "book"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importUsersFromCsv() {
+        InputStream in = stream("id,name\n1,\"Doe, John\"\n2,\n3,Jane\n");
+        ArgumentCaptor<List<User>> chunk = ArgumentCaptor.forClass(List.class);
+
+        ImportReport report = catalogImportService.importUsers(in, DataFormat.CSV);
+
+        verify(userRepository, times(1)).saveAll(chunk.capture());
+        assertEquals(Arrays.asList("Doe, John", "Jane"),
+                chunk.getValue().stream().map(User::getName).collect(Collectors.toList()));
+        assertEquals(2, report.getImported());
+        assertEquals(1, report.getFailed());
+    }
+
+    @Test
+    void importWhenCsvHeaderHasNoName() {
+        InputStream in = stream("id,title\n1,book\n");
+
+        assertThrows(InvalidRequestDataException.class, () -> catalogImportService.importBooks(in, DataFormat.CSV));
+
+        verifyNoInteractions(bookRepository);
+    }
+
+    @Test
+    void importWhenChunkFails() {
+        InputStream in = stream("{\"name\":\"book1\"}\n{\"name\":\"book2\"}\n{\"name\":\"book3\"}\n");
+
+        when(bookRepository.saveAll(anyList()))
+                .thenThrow(new DataIntegrityViolationException("duplicate"))
+                .thenReturn(Collections.emptyList());
+
+        ImportReport report = catalogImportService.importBooks(in, DataFormat.NDJSON);
+
+        assertEquals(1, report.getImported());
+        assertEquals(2, report.getFailed());
+        assertEquals(2, report.getChunks());
+        assertEquals("Lines 1-2: duplicate", report.getErrors().get(0));
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> names(List<Book> books) {
+        return books.stream().map(Book::getName).collect(Collectors.toList());
+    }
+}
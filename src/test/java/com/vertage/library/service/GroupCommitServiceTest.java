@@ -0,0 +1,121 @@
+package com.vertage.library.service;
+
+import com.vertage.library.dto.LoanRequest;
+import com.vertage.library.dto.LoanResult;
+import com.vertage.library.dto.LoanStatus;
+import com.vertage.library.exception.BookNotFoundException;
+import com.vertage.library.exception.InvalidRequestDataException;
+import com.vertage.library.exception.ServiceUnavailableException;
+import com.vertage.library.exception.UserNotFoundException;
+import com.vertage.library.service.impl.GroupCommitServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class GroupCommitServiceTest {
+
+    @Mock
+    private BookService bookService;
+
+    private GroupCommitServiceImpl groupCommit;
+
+    private ExecutorService callers;
+
+    @BeforeEach
+    void setUp() {
+        groupCommit = new GroupCommitServiceImpl(bookService, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(groupCommit, "enabled", true);
+        ReflectionTestUtils.setField(groupCommit, "batchSize", 10);
+        ReflectionTestUtils.setField(groupCommit, "maxDelay", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(groupCommit, "capacity", 10);
+        ReflectionTestUtils.setField(groupCommit, "waitTimeout", Duration.ofSeconds(5));
+        callers = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        groupCommit.stop();
+        callers.shutdownNow();
+    }
+
+    @Test
+    void disabledByDefaultDoesNotStart() {
+        GroupCommitServiceImpl disabled = new GroupCommitServiceImpl(bookService, new SimpleMeterRegistry());
+
+        disabled.start();
+
+        assertFalse(disabled.isEnabled());
+        assertFalse(disabled.isRunning());
+        assertThrows(ServiceUnavailableException.class, () -> disabled.returnBook(1L));
+    }
+
+    @Test
+    void concurrentLoansCommitInOneBatchWithOwnResults() throws Exception {
+        ReflectionTestUtils.setField(groupCommit, "batchSize", 3);
+        when(bookService.returnAndTakeBooks(anyList(), anyList())).thenAnswer(invocation -> {
+            List<LoanResult> results = new ArrayList<>();
+            for (Long bookId : invocation.<List<Long>>getArgument(0)) {
+                results.add(new LoanResult(bookId, null, LoanStatus.OK));
+            }
+            for (LoanRequest request : invocation.<List<LoanRequest>>getArgument(1)) {
+                results.add(new LoanResult(request.getBookId(), request.getUserId(),
+                        request.getBookId() == 2L ? LoanStatus.ALREADY_TAKEN : LoanStatus.OK));
+            }
+            return results;
+        });
+        groupCommit.start();
+
+        Future<?> take = callers.submit(() -> groupCommit.takeBook(1L, 10L));
+        Future<?> conflict = callers.submit(() -> groupCommit.takeBook(2L, 10L));
+        Future<?> giveBack = callers.submit(() -> groupCommit.returnBook(3L));
+
+        take.get(5, TimeUnit.SECONDS);
+        giveBack.get(5, TimeUnit.SECONDS);
+        assertTrue(assertThrows(Exception.class, () -> conflict.get(5, TimeUnit.SECONDS))
+                .getCause() instanceof InvalidRequestDataException);
+        verify(bookService, times(1)).returnAndTakeBooks(anyList(), anyList());
+    }
+
+    @Test
+    void maxDelayClosesPartialBatch() {
+        ReflectionTestUtils.setField(groupCommit, "maxDelay", Duration.ofMillis(1));
+        when(bookService.returnAndTakeBooks(Collections.emptyList(), Collections.singletonList(new LoanRequest(1L, 9L))))
+                .thenReturn(Collections.singletonList(new LoanResult(1L, 9L, LoanStatus.USER_NOT_FOUND)));
+        groupCommit.start();
+
+        assertThrows(UserNotFoundException.class, () -> groupCommit.takeBook(1L, 9L));
+    }
+
+    @Test
+    void failedBatchIsRetriedLoanByLoan() {
+        ReflectionTestUtils.setField(groupCommit, "maxDelay", Duration.ofMillis(1));
+        when(bookService.returnAndTakeBooks(any(), any())).thenThrow(new IllegalStateException("deadlock"));
+        when(bookService.returnBooks(Collections.singletonList(5L)))
+                .thenReturn(Collections.singletonList(new LoanResult(5L, null, LoanStatus.BOOK_NOT_FOUND)));
+        groupCommit.start();
+
+        assertThrows(BookNotFoundException.class, () -> groupCommit.returnBook(5L));
+        verify(bookService, times(1)).returnBooks(Arrays.asList(5L));
+    }
+}
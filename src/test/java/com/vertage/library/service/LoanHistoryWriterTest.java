@@ -0,0 +1,94 @@
+package com.vertage.library.service;
+
+import com.vertage.library.entity.LoanEvent;
+import com.vertage.library.event.BookChangedEvent;
+import com.vertage.library.repository.LoanEventRepository;
+import com.vertage.library.service.impl.LoanHistoryWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class LoanHistoryWriterTest {
+
+    @Mock
+    private LoanEventRepository loanEventRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private LoanHistoryWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        writer = new LoanHistoryWriter(loanEventRepository, new TransactionTemplate(transactionManager), registry);
+        ReflectionTestUtils.setField(writer, "capacity", 3);
+        ReflectionTestUtils.setField(writer, "batchSize", 2);
+        ReflectionTestUtils.setField(writer, "flushInterval", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(writer, "drainTimeout", Duration.ofSeconds(10));
+    }
+
+    @Test
+    void queuedEventsAreWrittenInBatchesOnStop() {
+        List<LoanEvent> written = new ArrayList<>();
+        doAnswer(invocation -> written.addAll(invocation.getArgument(0)))
+                .when(loanEventRepository).appendAll(anyList());
+
+        writer.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.TAKEN, 1L, 10L, null));
+        writer.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.SAVED, 2L, null, "book2"));
+        writer.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.RETURNED, 1L, null, null, 10L));
+        writer.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.RETURNED, 2L, null, null, null));
+        writer.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.TAKEN, 3L, 11L, null));
+        writer.start();
+        writer.stop();
+
+        assertEquals(Arrays.asList(1L, 1L, 3L), written.stream().map(LoanEvent::getBookId).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(LoanEvent.Type.TAKEN, LoanEvent.Type.RETURNED, LoanEvent.Type.TAKEN),
+                written.stream().map(LoanEvent::getType).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(10L, 10L, 11L), written.stream().map(LoanEvent::getUserId).collect(Collectors.toList()));
+        verify(loanEventRepository, times(2)).appendAll(anyList());
+    }
+
+    @Test
+    void dropsEventsWhenQueueIsFull() {
+        for (long bookId = 1; bookId <= 4; bookId++) {
+            writer.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.TAKEN, bookId, 10L, null));
+        }
+
+        assertEquals(1.0, registry.counter("library.loan.events.dropped").count());
+        verifyNoInteractions(loanEventRepository);
+    }
+
+    @Test
+    void failedBatchIsCountedAndWriterKeepsGoing() {
+        doThrow(new IllegalStateException("database down")).doNothing()
+                .when(loanEventRepository).appendAll(anyList());
+
+        writer.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.TAKEN, 1L, 10L, null));
+        writer.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.TAKEN, 2L, 10L, null));
+        writer.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.TAKEN, 3L, 10L, null));
+        writer.start();
+        writer.stop();
+
+        assertEquals(2.0, registry.counter("library.loan.events.failed").count());
+        verify(loanEventRepository, times(2)).appendAll(anyList());
+    }
+}
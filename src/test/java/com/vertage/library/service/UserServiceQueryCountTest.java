@@ -0,0 +1,100 @@
+package com.vertage.library.service;
+
+import com.vertage.library.dto.UserView;
+import com.vertage.library.entity.Book;
+import com.vertage.library.entity.User;
+import com.vertage.library.repository.BookRepository;
+import com.vertage.library.repository.UserRepository;
+import com.vertage.library.service.impl.UserServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+public class UserServiceQueryCountTest {
+
+    private static final int USERS = 10;
+    private static final int BOOKS_PER_USER = 3;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private UserService userService;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        userService = new UserServiceImpl(userRepository, bookRepository, event -> {
+        }, new SimpleMeterRegistry());
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        for (int i = 0; i < USERS; i++) {
+            User user = entityManager.persist(new User(null, "user" + i, null));
+            for (int j = 0; j < BOOKS_PER_USER; j++) {
+                entityManager.persist(new Book(null, "book" + i + "-" + j, user));
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+    }
+
+    @Test
+    void getAllCountsBooksInSingleStatement() {
+        List<UserView> users = userService.getAll(null, USERS);
+
+        assertEquals(USERS, users.size());
+        assertEquals(USERS * BOOKS_PER_USER, users.stream().mapToLong(UserView::getBookCount).sum());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void getByIdFetchesBooksInSingleStatement() {
+        Long id = userService.getAll(null, 1).get(0).getId();
+        entityManager.clear();
+        statistics.clear();
+
+        User user = userService.getById(id);
+
+        assertEquals(BOOKS_PER_USER, user.getBooks().size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void releaseBooksAndDeleteRunsSetBasedStatements() {
+        List<UserView> users = userService.getAll(null, 3);
+        statistics.clear();
+
+        userService.releaseBooksAndDeleteById(users.get(0).getId());
+        assertEquals(2, userService.deleteByIds(Arrays.asList(users.get(1).getId(), users.get(2).getId(), users.get(0).getId()), true));
+
+        assertEquals(0, statistics.getEntityLoadCount());
+        // Release and delete per call; the row locks read the holders through JDBC and are not counted here.
+        assertEquals(4, statistics.getPrepareStatementCount());
+        assertEquals(USERS - 3, userRepository.count());
+        assertEquals(3 * BOOKS_PER_USER, bookRepository.findAvailableViewsAfter(0L, PageRequest.of(0, USERS * BOOKS_PER_USER)).size());
+    }
+}
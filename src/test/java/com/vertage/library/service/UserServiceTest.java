@@ -1,21 +1,37 @@
 package com.vertage.library.service;
 
+import com.vertage.library.dto.UserView;
 import com.vertage.library.entity.User;
+import com.vertage.library.exception.InvalidRequestDataException;
+import com.vertage.library.exception.PreconditionFailedException;
+import com.vertage.library.exception.UserHoldsBooksException;
 import com.vertage.library.exception.UserNotFoundException;
+import com.vertage.library.event.BookChangedEvent;
+import com.vertage.library.repository.BookRepository;
 import com.vertage.library.repository.UserRepository;
 import com.vertage.library.service.impl.UserServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -24,26 +40,32 @@ public class UserServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     private UserService userService;
 
     private User user;
 
     @BeforeEach
     void setUp() {
-        userService = new UserServiceImpl(userRepository);
+        userService = new UserServiceImpl(userRepository, bookRepository, eventPublisher, new SimpleMeterRegistry());
         user = new User(1L, "name", null);
     }
 
     @Test
     void getByIdSuccessCase() {
-        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+        when(userRepository.findWithBooksById(user.getId())).thenReturn(Optional.of(user));
 
         assertEquals(user, userService.getById(user.getId()));
     }
 
     @Test()
     void getByIdWhenUserNotFound() {
-        when(userRepository.findById(user.getId())).thenThrow(UserNotFoundException.class);
+        when(userRepository.findWithBooksById(user.getId())).thenReturn(Optional.empty());
 
         assertThrows(UserNotFoundException.class, () -> userService.getById(user.getId()));
     }
@@ -53,14 +75,47 @@ public class UserServiceTest {
         assertThrows(NullPointerException.class, () -> userService.getById(null));
     }
 
+    @Test
+    void updateWhenRevisionChanged() {
+        when(userRepository.findViewById(1L)).thenReturn(Optional.of(new UserView(1L, "name", 1L, 3L)));
+
+        assertThrows(PreconditionFailedException.class, () -> userService.update(1L, user, "3-0"));
+
+        verify(userRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void updateCopiesStoredVersion() {
+        when(userRepository.findViewById(1L)).thenReturn(Optional.of(new UserView(1L, "name", 1L, 3L)));
+        when(userRepository.saveAndFlush(user)).thenReturn(user);
+
+        userService.update(1L, user, "3-1");
+
+        assertEquals(3L, user.getVersion());
+    }
+
     @Test
     void getAllSuccessCase() {
-        User user2 = new User(2L, "user2", null);
-        List<User> expectedUsers = Arrays.asList(user, user2);
+        List<UserView> expectedUsers = Arrays.asList(new UserView(1L, "name", 0L, 0L), new UserView(2L, "user2", 3L, 0L));
+
+        when(userRepository.findViewsAfter(0L, PageRequest.of(0, 2))).thenReturn(expectedUsers);
+
+        assertEquals(expectedUsers, userService.getAll(null, 2));
+    }
 
-        when(userRepository.findAll()).thenReturn(expectedUsers);
+    @Test
+    void getViewByIdWhenUserNotFound() {
+        when(userRepository.findViewById(1L)).thenReturn(Optional.empty());
+
+        assertThrows(UserNotFoundException.class, () -> userService.getViewById(1L));
+    }
+
+    @Test
+    void getAllWhenLimitIsOutOfRange() {
+        assertThrows(InvalidRequestDataException.class, () -> userService.getAll(null, 0));
+        assertThrows(InvalidRequestDataException.class, () -> userService.getAll(null, 1001));
 
-        assertEquals(expectedUsers.size(), userService.getAll().size());
+        verifyNoInteractions(userRepository);
     }
 
     @Test
@@ -70,11 +125,66 @@ public class UserServiceTest {
         verify(userRepository, times(1)).deleteById(1L);
     }
 
+    @Test
+    void deleteByIdWhenUserHoldsBooks() {
+        doThrow(new DataIntegrityViolationException("fk_user")).when(userRepository).flush();
+
+        assertThrows(UserHoldsBooksException.class, () -> userService.deleteById(1L));
+    }
+
     @Test()
     void deleteByIdWhenIdIsNull() {
         assertThrows(NullPointerException.class, () -> userService.deleteById(null));
     }
 
+    @Test
+    void releaseBooksAndDeleteByIdPublishesReturns() {
+        Map<Long, Long> holders = new LinkedHashMap<>();
+        holders.put(3L, 1L);
+        holders.put(4L, 1L);
+        when(bookRepository.lockBooksHeldBy(Collections.singleton(1L))).thenReturn(holders);
+        when(userRepository.deleteByIdIn(Collections.singleton(1L))).thenReturn(1);
+
+        userService.releaseBooksAndDeleteById(1L);
+
+        verify(bookRepository).releaseBooksHeldBy(Collections.singleton(1L));
+        verify(eventPublisher).publishEvent(new BookChangedEvent(BookChangedEvent.Type.RETURNED, 3L, null, null, 1L));
+        verify(eventPublisher).publishEvent(new BookChangedEvent(BookChangedEvent.Type.RETURNED, 4L, null, null, 1L));
+        verify(userRepository, never()).deleteById(any());
+    }
+
+    @Test
+    void releaseBooksAndDeleteByIdWhenUserNotFound() {
+        when(bookRepository.lockBooksHeldBy(Collections.singleton(1L))).thenReturn(Collections.emptyMap());
+
+        assertThrows(UserNotFoundException.class, () -> userService.releaseBooksAndDeleteById(1L));
+        verify(bookRepository, never()).releaseBooksHeldBy(any());
+    }
+
+    @Test
+    void deleteByIdsWithoutReleasingBooks() {
+        when(userRepository.deleteByIdIn(new LinkedHashSet<>(Arrays.asList(1L, 2L)))).thenReturn(2);
+
+        assertEquals(2, userService.deleteByIds(Arrays.asList(1L, null, 2L, 1L), false));
+        verifyNoInteractions(bookRepository, eventPublisher);
+    }
+
+    @Test
+    void deleteByIdsWhenUserHoldsBooks() {
+        when(userRepository.deleteByIdIn(Collections.singleton(1L)))
+                .thenThrow(new DataIntegrityViolationException("fk_user"));
+
+        assertThrows(UserHoldsBooksException.class, () -> userService.deleteByIds(Collections.singletonList(1L), false));
+    }
+
+    @Test
+    void deleteByIdsWhenBatchIsOutOfRange() {
+        assertThrows(InvalidRequestDataException.class, () -> userService.deleteByIds(Collections.emptyList(), true));
+        assertThrows(InvalidRequestDataException.class,
+                () -> userService.deleteByIds(Collections.nCopies(1001, 1L), true));
+        verifyNoInteractions(userRepository, bookRepository);
+    }
+
     @Test
     void saveSuccessCase() {
         when(userRepository.save(user)).thenReturn(user);
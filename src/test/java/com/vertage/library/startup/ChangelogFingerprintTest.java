@@ -0,0 +1,99 @@
+package com.vertage.library.startup;
+
+import liquibase.integration.spring.SpringLiquibase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChangelogFingerprintTest {
+
+    private static final String CHANGE_LOG = "classpath:db/changelog/master.xml";
+    private static final String COUNT_SQL = "SELECT COUNT(*) FROM tb_changelog_fingerprint";
+
+    private EmbeddedDatabase database;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        jdbcTemplate = new JdbcTemplate(database);
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void firstBootRunsAndRecords() throws Exception {
+        assertTrue(boot(null, true));
+
+        assertEquals(1, jdbcTemplate.queryForObject(COUNT_SQL, Integer.class));
+    }
+
+    @Test
+    void unchangedChangelogIsSkipped() throws Exception {
+        boot(null, true);
+
+        assertFalse(boot(null, true));
+        assertEquals(1, jdbcTemplate.queryForObject(COUNT_SQL, Integer.class));
+    }
+
+    @Test
+    void otherContextsRunAgain() throws Exception {
+        boot(null, true);
+
+        assertTrue(boot("other", true));
+        assertEquals(2, jdbcTemplate.queryForObject(COUNT_SQL, Integer.class));
+    }
+
+    @Test
+    void disabledLiquibaseIsNotRecorded() throws Exception {
+        boot(null, true);
+        jdbcTemplate.update("DELETE FROM tb_changelog_fingerprint");
+
+        assertFalse(boot(null, false));
+        assertEquals(0, jdbcTemplate.queryForObject(COUNT_SQL, Integer.class));
+    }
+
+    /**
+     * Initializes a Liquibase bean the way the context would, with Boot's {@code spring.liquibase.enabled}.
+     *
+     * @return whether Liquibase ran
+     */
+    private boolean boot(String contexts, boolean enabled) throws Exception {
+        ChangelogFingerprint fingerprint = new ChangelogFingerprint(new PathMatchingResourcePatternResolver(), enabled);
+        RecordingLiquibase liquibase = new RecordingLiquibase();
+        liquibase.setDataSource(database);
+        liquibase.setChangeLog(CHANGE_LOG);
+        liquibase.setResourceLoader(new PathMatchingResourcePatternResolver());
+        liquibase.setContexts(contexts);
+        liquibase.setShouldRun(enabled);
+        fingerprint.postProcessBeforeInitialization(liquibase, "liquibase");
+        liquibase.afterPropertiesSet();
+        fingerprint.postProcessAfterInitialization(liquibase, "liquibase");
+        return liquibase.ran;
+    }
+
+    private static final class RecordingLiquibase extends SpringLiquibase {
+
+        private boolean ran;
+
+        @Override
+        public void afterPropertiesSet() throws liquibase.exception.LiquibaseException {
+            ran = shouldRun;
+            super.afterPropertiesSet();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.vertage.library.startup;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StartupTimingReportTest {
+
+    @Test
+    void reportsPhasesAndSlowestBeans() {
+        BufferingApplicationStartup startup = new BufferingApplicationStartup(100);
+        startup.start("spring.boot.application.starting").end();
+        StartupStep refresh = startup.start("spring.context.refresh");
+        startup.start("spring.beans.instantiate").tag("beanName", "bookService").end();
+        startup.start("spring.beans.instantiate").tag("beanName", "userService").end();
+        startup.start("spring.beans.instantiate").tag("beanName", "cacheManager").end();
+        refresh.end();
+        startup.start("spring.beans.instantiate").tag("beanName", "lazyBean").end();
+
+        String report = new StartupTimingReport(2).report(startup.getBufferedTimeline());
+
+        assertTrue(report.contains("jvm start to ready"));
+        assertTrue(report.contains("spring.boot.application.starting"));
+        assertTrue(report.contains("spring.context.refresh"));
+        assertFalse(report.contains("spring.beans.instantiate"));
+        assertEquals(2, report.split("Service|cacheManager|lazyBean", -1).length - 1);
+    }
+}
@@ -0,0 +1,72 @@
+package com.vertage.library.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LongLongHashMapTest {
+
+    private static final long MISSING = -1L;
+
+    @Test
+    void putGetAndRemove() {
+        LongLongHashMap map = new LongLongHashMap(4, MISSING);
+
+        assertEquals(MISSING, map.put(1L, 10L));
+        assertEquals(10L, map.put(1L, 11L));
+        assertEquals(11L, map.get(1L));
+        assertEquals(MISSING, map.get(2L));
+        assertTrue(map.containsKey(1L));
+        assertEquals(11L, map.remove(1L));
+        assertEquals(MISSING, map.remove(1L));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    void putIfAbsentKeepsExistingValue() {
+        LongLongHashMap map = new LongLongHashMap(4, MISSING);
+        map.put(1L, 0L);
+
+        assertFalse(map.putIfAbsent(1L, 5L));
+        assertTrue(map.putIfAbsent(2L, 5L));
+        assertEquals(0L, map.get(1L));
+        assertEquals(5L, map.get(2L));
+    }
+
+    @Test
+    void zeroKeyIsRejected() {
+        LongLongHashMap map = new LongLongHashMap(4, MISSING);
+
+        assertThrows(IllegalArgumentException.class, () -> map.put(0L, 1L));
+        assertThrows(IllegalArgumentException.class, () -> map.get(0L));
+    }
+
+    @Test
+    void behavesLikeHashMapUnderRandomOperations() {
+        LongLongHashMap map = new LongLongHashMap(4, MISSING);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 200_000; i++) {
+            long key = 1 + random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.getOrDefault(key, MISSING).longValue(), map.remove(key));
+                expected.remove(key);
+            } else {
+                long value = random.nextInt(100);
+                assertEquals(expected.getOrDefault(key, MISSING).longValue(), map.put(key, value));
+                expected.put(key, value);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        expected.forEach((key, value) -> assertEquals(value.longValue(), map.get(key)));
+        Map<Long, Long> iterated = new HashMap<>();
+        map.forEach(iterated::put);
+        assertEquals(expected, iterated);
+    }
+}
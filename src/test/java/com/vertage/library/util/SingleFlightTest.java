@@ -0,0 +1,120 @@
+package com.vertage.library.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentCallersShareOneLoad() throws Exception {
+        SingleFlight<Long, String> flight = new SingleFlight<>("test", registry);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> leader = executor.submit(() -> flight.get(1L, () -> {
+            loads.incrementAndGet();
+            await(release);
+            return "one";
+        }));
+        waitUntil(() -> flight.inFlight() == 1);
+        List<Future<String>> followers = new ArrayList<>();
+        for (int i = 1; i < CALLERS; i++) {
+            followers.add(executor.submit(() -> flight.get(1L, () -> {
+                loads.incrementAndGet();
+                return "other";
+            })));
+        }
+        waitUntil(() -> count("shared") == CALLERS - 1);
+        release.countDown();
+
+        assertEquals("one", leader.get(5, TimeUnit.SECONDS));
+        for (Future<String> follower : followers) {
+            assertEquals("one", follower.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1.0, count("leader"));
+        assertEquals(0, flight.inFlight());
+    }
+
+    @Test
+    void failureIsSharedAndNotKept() throws Exception {
+        SingleFlight<Long, String> flight = new SingleFlight<>("test", registry);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> leader = executor.submit(() -> flight.get(1L, () -> {
+            await(release);
+            throw new IllegalStateException("boom");
+        }));
+        waitUntil(() -> flight.inFlight() == 1);
+        Future<String> follower = executor.submit(() -> flight.get(1L, () -> "other"));
+        waitUntil(() -> count("shared") == 1);
+        release.countDown();
+
+        assertTrue(assertThrows(ExecutionException.class,
+                () -> leader.get(5, TimeUnit.SECONDS)).getCause() instanceof IllegalStateException);
+        assertTrue(assertThrows(ExecutionException.class,
+                () -> follower.get(5, TimeUnit.SECONDS)).getCause() instanceof IllegalStateException);
+        assertEquals("next", flight.get(1L, () -> "next"));
+    }
+
+    @Test
+    void differentKeysLoadIndependently() {
+        SingleFlight<Long, String> flight = new SingleFlight<>("test", registry);
+
+        assertEquals("one", flight.get(1L, () -> "one"));
+        assertEquals("two", flight.get(2L, () -> "two"));
+        assertEquals(2.0, count("leader"));
+        assertEquals(0.0, count("shared"));
+    }
+
+    private double count(String result) {
+        return registry.counter(SingleFlight.CALLS, "name", "test", "result", result).count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(1);
+        }
+    }
+}